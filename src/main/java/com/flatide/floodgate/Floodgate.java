@@ -24,6 +24,7 @@
 
 package com.flatide.floodgate;
 
+import com.flatide.floodgate.agent.connector.ConnectionPoolManager;
 import com.flatide.floodgate.agent.connector.function.DefaultEmbedFunction;
 import com.flatide.floodgate.agent.connector.function.FloodgateFunctionManager;
 import com.flatide.floodgate.agent.handler.FileLogHandler;
@@ -51,5 +52,12 @@ public class Floodgate {
 
         DefaultEmbedFunction function = new DefaultEmbedFunction();
         FloodgateFunctionManager.shared().setFunction(function);
+
+        // agent가 shutdown()을 호출하지 않고 종료되어도 커넥션 풀을 닫는다
+        Runtime.getRuntime().addShutdownHook(new Thread(Floodgate::shutdown, "floodgate-shutdown"));
    }
+
+    public static void shutdown() {
+        ConnectionPoolManager.shared().close();
+    }
 }
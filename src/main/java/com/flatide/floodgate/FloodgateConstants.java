@@ -6,6 +6,7 @@ public class FloodgateConstants {
     public static final String META_SOURCE_TABLE_FOR_DATASOURCE = "meta.source.tableForDatasource";
     public static final String META_SOURCE_TABLE_FOR_TEMPLATE = "meta.source.tableForTemplate";
     public static final String META_SOURCE_TABLE_FOR_META_HISTORY = "meta.source.tableForMetaHistory";
+    public static final String META_SOURCE_TABLE_FOR_WATERMARK = "meta.source.tableForWatermark";
     public static final String META_SOURCE_BACKUP_FOLDER = "meta.source.backupFolder";
     public static final String META_SOURCE_BACKUP_RULE_FOR_FLOW = "meta.source.backupRuleForFlow";
     public static final String META_SOURCE_BACKUP_RULE_FOR_DATASOURCE = "meta.source.backupRuleForDatasource";
@@ -14,4 +15,6 @@ public class FloodgateConstants {
     public static final String CHANNEL_PAYLOAD_FOLDER = "channel.payload.folder";
     public static final String CHANNEL_LOG_TABLE_FOR_API = "channel.log.tableForAPI";
     public static final String CHANNEL_LOG_TABLE_FOR_FLOW = "channel.log.tableForFlow";
+
+    public static final String AGENT_SCHEMA_CACHE_TTL = "agent.schemaCache.ttl";
 }
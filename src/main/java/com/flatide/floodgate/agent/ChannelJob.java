@@ -28,12 +28,12 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flatide.floodgate.ConfigurationManager;
 import com.flatide.floodgate.FloodgateConstants;
 import com.flatide.floodgate.agent.flow.Flow;
+import com.flatide.floodgate.agent.flow.FlowPlan;
 import com.flatide.floodgate.agent.flow.FlowTag;
 import com.flatide.floodgate.agent.flow.stream.FGInputStream;
 import com.flatide.floodgate.agent.flow.stream.carrier.Carrier;
 import com.flatide.floodgate.agent.handler.FloodgateHandlerManager;
 import com.flatide.floodgate.agent.handler.FloodgateHandlerManager.Step;
-import com.flatide.floodgate.agent.meta.MetaManager;
 import com.flatide.floodgate.agent.spool.SpoolingManager;
 
 import java.io.File;
@@ -86,10 +86,12 @@ public class ChannelJob implements Callable<Map> {
         try {
             // If FLOW exists in request body when API type is Instant Interfacing
             Map<String, Object> flowInfo = (Map) this.context.get(Context.CONTEXT_KEY.FLOW_META.toString());
+            FlowPlan plan = null;
             if( flowInfo == null ) {
                 String flowInfoTable = ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_FLOW);
-                Map flowMeta = MetaManager.shared().read( flowInfoTable, target);
-                flowInfo = (Map) flowMeta.get("DATA");
+                // meta가 바뀌지 않았으면 meta를 읽지 않고 이전에 컴파일한 계획을 사용한다
+                plan = FlowPlan.get(flowInfoTable, target);
+                flowInfo = plan.getSource();
             }
 
             String flowId = flow.getFlowId();
@@ -126,7 +128,7 @@ public class ChannelJob implements Callable<Map> {
                 result.put("ID", flowId.toString());
                 log.put("RESULT", "spooled");
             } else {
-                flow.prepare(flowInfo, current);
+                flow.prepare(plan != null ? plan : FlowPlan.compile(flowInfo), current);
                 FGInputStream returnStream = flow.process();
                 if( returnStream != null ) {
                     Carrier carrier = returnStream.getCarrier();
@@ -27,8 +27,8 @@ package com.flatide.floodgate.agent;
 import com.flatide.floodgate.ConfigurationManager;
 import com.flatide.floodgate.FloodgateConstants;
 import com.flatide.floodgate.agent.flow.Flow;
+import com.flatide.floodgate.agent.flow.FlowPlan;
 import com.flatide.floodgate.agent.flow.stream.FGInputStream;
-import com.flatide.floodgate.agent.meta.MetaManager;
 
 import java.util.HashMap;
 import java.util.Map;
@@ -62,13 +62,15 @@ public class PushAgent extends Spoolable {
 
             // If FLOW exists in request body when API type is Instant Interfacing
             Map<String, Object> flowInfo = (Map) this.context.get(Context.CONTEXT_KEY.FLOW_META.toString());
+            FlowPlan plan;
             if( flowInfo == null ) {
                 String flowInfoTable = ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_FLOW);
-                Map flowMeta = MetaManager.shared().read( flowInfoTable, ifId);
-                flowInfo = (Map) flowMeta.get("DATA");
+                plan = FlowPlan.get(flowInfoTable, ifId);
+            } else {
+                plan = FlowPlan.compile(flowInfo);
             }
             Flow flow = new Flow(ifId, this.context);
-            flow.prepare(flowInfo, data);
+            flow.prepare(plan, data);
             flow.process();
         } catch(Exception e) {
             e.printStackTrace();
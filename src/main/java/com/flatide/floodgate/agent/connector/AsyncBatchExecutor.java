@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+
+import java.sql.BatchUpdateException;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/*
+    executeBatch를 I/O 쓰레드에서 수행하고, 그동안 flow 쓰레드는 다음 batch의 값을 평가한다
+
+    PreparedStatement는 쓰레드간에 공유할 수 없으므로 flow 쓰레드는 값만 평가해서 버퍼에 담고
+    바인딩과 실행은 I/O 쓰레드에서 수행한다. 버퍼는 두개를 번갈아 사용하며(double buffering),
+    실행중인 batch는 항상 하나이므로 실행 순서는 유지된다.
+ */
+public class AsyncBatchExecutor {
+    private final PreparedStatement ps;
+    private final BindingPlan plan;
+    private final Context context;
+    private final int batchSize;
+    private final int timeout;
+
+    private final ExecutorService executor;
+
+    private Object[][] filling;
+    private Object[][] spare;
+    private int filled = 0;
+
+    private Future<Integer> pending = null;
+
+    // 실패한 batch에서 실패한 행의 위치
+    private volatile int failedCount = 0;
+
+    public AsyncBatchExecutor(PreparedStatement ps, BindingPlan plan, Context context, int batchSize, int timeout) {
+        this.ps = ps;
+        this.plan = plan;
+        this.context = context;
+        this.batchSize = Math.max(batchSize, 1);
+        this.timeout = timeout;
+
+        this.filling = new Object[this.batchSize][plan.size()];
+        this.spare = new Object[this.batchSize][plan.size()];
+
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "floodgate-batch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    // true if the buffer is full
+    public boolean add(Map item) {
+        this.plan.resolve(item, this.context, this.filling[this.filled++]);
+        return this.filled >= this.batchSize;
+    }
+
+    public boolean add(RecordBatch batch, int row) {
+        this.plan.resolve(batch, row, this.context, this.filling[this.filled++]);
+        return this.filled >= this.batchSize;
+    }
+
+    /*
+        이전 batch가 끝나기를 기다린 후 현재 버퍼를 실행한다
+        리턴값은 이전 batch에서 실행된 행의 수
+     */
+    public int submit() throws Exception {
+        int done = await();
+
+        if (this.filled > 0) {
+            final Object[][] rows = this.filling;
+            final int count = this.filled;
+
+            this.filling = this.spare;
+            this.spare = rows;
+            this.filled = 0;
+
+            this.pending = this.executor.submit(() -> execute(rows, count));
+        }
+
+        return done;
+    }
+
+    // 실행중인 batch를 기다린다, 리턴값은 실행된 행의 수
+    public int await() throws Exception {
+        if (this.pending == null) {
+            return 0;
+        }
+
+        Future<Integer> future = this.pending;
+        this.pending = null;
+        return future.get();
+    }
+
+    public int getFailedCount() {
+        return this.failedCount;
+    }
+
+    // 실행중인 batch의 결과를 무시하고 버퍼를 비운다 (rollback 전)
+    public void cancel() {
+        try {
+            await();
+        } catch (Exception e) {
+            // already reported
+        }
+        this.filled = 0;
+    }
+
+    public void close() {
+        cancel();
+        this.executor.shutdown();
+    }
+
+    private int execute(Object[][] rows, int count) throws Exception {
+        try {
+            for (int i = 0; i < count; i++) {
+                this.plan.bind(this.ps, rows[i]);
+                this.ps.addBatch();
+            }
+            this.ps.setQueryTimeout(this.timeout);
+            this.ps.executeBatch();
+        } catch (BatchUpdateException e) {
+            // 첫번째로 실패한 행, 실패 후 중단하는 driver는 성공한 행까지만 리턴한다
+            int[] counts = e.getUpdateCounts();
+            int failed = counts == null ? 0 : counts.length;
+            for (int i = 0; counts != null && i < counts.length; i++) {
+                if (counts[i] == Statement.EXECUTE_FAILED) {
+                    failed = i;
+                    break;
+                }
+            }
+            this.failedCount = failed;
+            throw e;
+        } catch (Exception e) {
+            this.failedCount = Math.max(this.ps.getUpdateCount(), 0);
+            throw e;
+        }
+        return count;
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.flow.stream.LobHandle;
+
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+
+/*
+    AUTOTUNE : 측정한 실행 시간과 행의 크기로 batch 크기와 fetch 크기를 정한다
+
+    batch   : executeBatch 한번이 TARGET_BATCH_MILLIS 정도 걸리도록 조정하되, 한번에 최대 2배까지만 변경하고
+              바인딩되는 데이터가 MAX_BATCH_BYTES를 넘지 않도록 한다
+    fetch   : 평균 행 크기로 FETCH_MEMORY_BUDGET에 맞는 행의 수
+ */
+public class AutoTuner {
+    static final long TARGET_BATCH_MILLIS = 500;
+    static final int MIN_BATCH = 100;
+    static final int MAX_BATCH = 50000;
+    static final long MAX_BATCH_BYTES = 8 * 1024 * 1024;
+
+    static final long FETCH_MEMORY_BUDGET = 16 * 1024 * 1024;
+    static final int MIN_FETCH = 100;
+    static final int MAX_FETCH = 10000;
+
+    // 행의 크기는 일부 행만 측정한다
+    static final int SAMPLE_INTERVAL = 16;
+
+    private int batchSize;
+
+    private long sampledBytes = 0;
+    private long sampledRows = 0;
+
+    public AutoTuner(int batchSize) {
+        this.batchSize = clamp(batchSize, MIN_BATCH, MAX_BATCH);
+    }
+
+    public int getBatchSize() {
+        return this.batchSize;
+    }
+
+    public boolean isSampling(int row) {
+        return row % SAMPLE_INTERVAL == 0;
+    }
+
+    public void addSample(long rowBytes) {
+        this.sampledBytes += rowBytes;
+        this.sampledRows++;
+    }
+
+    public double getAverageRowBytes() {
+        return this.sampledRows == 0 ? 0 : (double) this.sampledBytes / this.sampledRows;
+    }
+
+    // 실행된 batch의 결과로 다음 batch의 크기를 정한다
+    public int adjustBatch(int rows, long elapsedNanos) {
+        if (rows < this.batchSize) {
+            // last partial batch
+            return this.batchSize;
+        }
+
+        double millis = Math.max(elapsedNanos / 1000000.0, 1.0);
+        long target = (long) (rows * TARGET_BATCH_MILLIS / millis);
+        target = Math.max(Math.min(target, this.batchSize * 2L), this.batchSize / 2L);
+
+        double rowBytes = getAverageRowBytes();
+        if (rowBytes > 0) {
+            target = Math.min(target, (long) (MAX_BATCH_BYTES / rowBytes));
+        }
+
+        this.batchSize = clamp(target, MIN_BATCH, MAX_BATCH);
+        return this.batchSize;
+    }
+
+    public static int getFetchSize(double rowBytes) {
+        if (rowBytes <= 0) {
+            return MIN_FETCH;
+        }
+        return clamp((long) (FETCH_MEMORY_BUDGET / rowBytes), MIN_FETCH, MAX_FETCH);
+    }
+
+    // 컬럼 정의로 추정한 행의 크기
+    public static double estimateRowBytes(ResultSetMetaData rsmeta) throws SQLException {
+        double bytes = 0;
+        for (int i = 1; i <= rsmeta.getColumnCount(); i++) {
+            switch (rsmeta.getColumnType(i)) {
+                case Types.TINYINT:
+                case Types.SMALLINT:
+                case Types.INTEGER:
+                case Types.BIGINT:
+                case Types.REAL:
+                case Types.FLOAT:
+                case Types.DOUBLE:
+                    bytes += 8;
+                    break;
+                case Types.DATE:
+                case Types.TIME:
+                case Types.TIMESTAMP:
+                    bytes += 16;
+                    break;
+                case Types.CLOB:
+                case Types.NCLOB:
+                case Types.BLOB:
+                case Types.LONGVARCHAR:
+                case Types.LONGVARBINARY:
+                    bytes += 4096;
+                    break;
+                default:
+                    int size = rsmeta.getColumnDisplaySize(i);
+                    bytes += size <= 0 ? 32 : Math.min(size, 4000);
+                    break;
+            }
+        }
+        return bytes;
+    }
+
+    // 값의 대략적인 크기
+    public static long estimate(Object value) {
+        if (value == null) {
+            return 1;
+        }
+        if (value instanceof String) {
+            return ((String) value).length() * 2L;
+        }
+        if (value instanceof byte[]) {
+            return ((byte[]) value).length;
+        }
+        if (value instanceof LobHandle) {
+            return ((LobHandle) value).length();
+        }
+        if (value instanceof java.util.Date) {
+            return 16;
+        }
+        if (value instanceof Number) {
+            return 8;
+        }
+        return 32;
+    }
+
+    private static int clamp(long value, int min, int max) {
+        return (int) Math.max(min, Math.min(max, value));
+    }
+}
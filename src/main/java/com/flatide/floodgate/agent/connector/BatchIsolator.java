@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLNonTransientConnectionException;
+import java.sql.SQLRecoverableException;
+import java.sql.SQLTimeoutException;
+import java.sql.SQLTransientConnectionException;
+import java.sql.Savepoint;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    ERRORMODE : ISOLATE
+
+    batch마다 savepoint를 설정하고, 실패하면 savepoint로 되돌린 후 batch를 반으로 나누어 다시 실행한다.
+    한 행만 남았는데도 실패하면 그 행을 dead letter로 기록하고 나머지는 계속 적재한다.
+    다시 실행하기 위해 바인딩할 값을 평가해서 보관한다.
+    커넥션이나 timeout 오류는 행의 문제가 아니므로 그대로 던진다.
+ */
+public class BatchIsolator {
+    private final Connection connection;
+    private final PreparedStatement ps;
+    private final BindingPlan plan;
+    private final Context context;
+    private final DeadLetterWriter writer;
+    private final int timeout;
+
+    private final List<Object[]> rows = new ArrayList<>();
+    private int filled = 0;
+
+    private int rejected = 0;
+
+    public BatchIsolator(Connection connection, PreparedStatement ps, BindingPlan plan, Context context, DeadLetterWriter writer, int timeout) {
+        this.connection = connection;
+        this.ps = ps;
+        this.plan = plan;
+        this.context = context;
+        this.writer = writer;
+        this.timeout = timeout;
+    }
+
+    public int size() {
+        return this.filled;
+    }
+
+    public int getRejected() {
+        return this.rejected;
+    }
+
+    public void add(Map item) {
+        this.plan.resolve(item, this.context, nextRow());
+    }
+
+    public void add(RecordBatch batch, int row) {
+        this.plan.resolve(batch, row, this.context, nextRow());
+    }
+
+    // 버퍼의 행을 실행하고 적재된 행의 수를 리턴한다
+    public int execute() throws Exception {
+        if (this.filled == 0) {
+            return 0;
+        }
+
+        int count = execute(0, this.filled);
+        this.filled = 0;
+        this.writer.flush();
+        return count;
+    }
+
+    public void clear() {
+        this.filled = 0;
+    }
+
+    public void close() throws Exception {
+        this.writer.close();
+    }
+
+    private Object[] nextRow() {
+        if (this.filled == this.rows.size()) {
+            this.rows.add(new Object[this.plan.size()]);
+        }
+        return this.rows.get(this.filled++);
+    }
+
+    private int execute(int from, int to) throws Exception {
+        Savepoint savepoint = this.connection.setSavepoint();
+        try {
+            for (int i = from; i < to; i++) {
+                this.plan.bind(this.ps, this.rows.get(i));
+                this.ps.addBatch();
+            }
+            this.ps.setQueryTimeout(this.timeout);
+            this.ps.executeBatch();
+            release(savepoint);
+            return to - from;
+        } catch (SQLException e) {
+            if (isFatal(e)) {
+                throw e;
+            }
+
+            this.ps.clearBatch();
+            this.connection.rollback(savepoint);
+            release(savepoint);
+
+            if (to - from == 1) {
+                reject(this.rows.get(from), e);
+                return 0;
+            }
+
+            int mid = (from + to) >>> 1;
+            return execute(from, mid) + execute(mid, to);
+        }
+    }
+
+    private void reject(Object[] values, SQLException e) throws Exception {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (int i = 0; i < values.length; i++) {
+            row.put(this.plan.getKey(i), values[i]);
+        }
+
+        SQLException cause = e.getNextException() != null ? e.getNextException() : e;
+        this.writer.write(row, cause.getMessage());
+        this.rejected++;
+    }
+
+    private void release(Savepoint savepoint) {
+        try {
+            this.connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            // not supported by some drivers, released at the end of the transaction
+        }
+    }
+
+    private static boolean isFatal(SQLException e) {
+        return e instanceof SQLTimeoutException
+                || e instanceof SQLRecoverableException
+                || e instanceof SQLTransientConnectionException
+                || e instanceof SQLNonTransientConnectionException;
+    }
+}
@@ -0,0 +1,396 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.connector.function.FloodgateFunctionManager;
+import com.flatide.floodgate.agent.flow.stream.LobHandle;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+import com.flatide.floodgate.agent.flow.stream.RecordSchema;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.sql.ParameterMetaData;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.List;
+import java.util.Map;
+
+/*
+    MappingRule.getParam()을 PreparedStatement 바인딩 계획으로 한번만 컴파일한다
+
+    param의 각 항목은 다음과 같다
+        ">FUNC"         : 행마다 FloodgateFunctionManager로 평가
+        "{CONTEXT.KEY}" : 모듈 컨텍스트의 값, 모듈 실행 동안 변하지 않으므로 컴파일시에 한번만 평가
+        "COLUMN"        : 행의 컬럼 값
+ */
+public class BindingPlan {
+    private static final Logger logger = LogManager.getLogger(BindingPlan.class);
+
+    static final int COLUMN = 0;
+    static final int FUNCTION = 1;
+    static final int CONTEXT = 2;
+
+    private final int size;
+    private final int[] sources;
+    private final String[] keys;
+    private final int[] sqlTypes;
+    private final Object[] constants;
+
+    // RecordBatch의 컬럼 위치, schema가 바뀔 때만 다시 계산한다
+    private RecordSchema boundSchema = null;
+    private int[] columns = null;
+
+    private BindingPlan(int size) {
+        this.size = size;
+        this.sources = new int[size];
+        this.keys = new String[size];
+        this.sqlTypes = new int[size];
+        this.constants = new Object[size];
+    }
+
+    // without PreparedStatement, values are resolved only
+    public static BindingPlan compile(List<String> param, Context context) {
+        return compile(param, null, context);
+    }
+
+    public static BindingPlan compile(List<String> param, PreparedStatement ps, Context context) {
+        return compile(param, ps, context, null);
+    }
+
+    /*
+        columnTypes : param 항목별 java.sql.Types, SchemaCache에서 얻은 대상 컬럼 타입
+        타입이 없는 항목만 ParameterMetaData를 조회한다
+     */
+    public static BindingPlan compile(List<String> param, PreparedStatement ps, Context context, Map<String, Integer> columnTypes) {
+        BindingPlan plan = new BindingPlan(param.size());
+
+        ParameterMetaData meta = null;
+        boolean metaLoaded = ps == null;
+
+        for (int i = 0; i < plan.size; i++) {
+            String key = param.get(i);
+            if (key.startsWith(">")) {
+                plan.sources[i] = FUNCTION;
+                plan.keys[i] = key.substring(1);
+            } else if (key.startsWith("{")) {
+                plan.sources[i] = CONTEXT;
+                plan.keys[i] = key.substring(1, key.length() - 1);
+                plan.constants[i] = context.get(plan.keys[i]);
+            } else {
+                plan.sources[i] = COLUMN;
+                plan.keys[i] = key;
+            }
+
+            plan.sqlTypes[i] = Types.OTHER;
+            Integer type = columnTypes != null ? columnTypes.get(key) : null;
+            if (type != null) {
+                plan.sqlTypes[i] = type;
+                continue;
+            }
+
+            if (!metaLoaded) {
+                metaLoaded = true;
+                try {
+                    meta = ps.getParameterMetaData();
+                } catch (Exception e) {
+                    // Some drivers do not support parameter metadata, binding by value type
+                    logger.info("ParameterMetaData is not supported, binding by value type : " + e.getMessage());
+                }
+            }
+            if (meta != null) {
+                try {
+                    plan.sqlTypes[i] = meta.getParameterType(i + 1);
+                } catch (Exception e) {
+                    logger.info("Cannot read the type of parameter " + (i + 1) + ", binding by value type : " + e.getMessage());
+                    meta = null;
+                }
+            }
+        }
+
+        return plan;
+    }
+
+    public int size() {
+        return this.size;
+    }
+
+    public String getKey(int index) {
+        return this.keys[index];
+    }
+
+    public boolean isColumn(int index) {
+        return this.sources[index] == COLUMN;
+    }
+
+    public Object resolve(int index, Map item, Context context) {
+        switch (this.sources[index]) {
+            case FUNCTION:
+                return FloodgateFunctionManager.shared().processFunction(context, this.keys[index]);
+            case CONTEXT:
+                return this.constants[index];
+            default:
+                return item.get(this.keys[index]);
+        }
+    }
+
+    public void bind(PreparedStatement ps, Map item, Context context) throws SQLException {
+        for (int i = 0; i < this.size; i++) {
+            setValue(ps, i + 1, resolve(i, item, context), this.sqlTypes[i]);
+        }
+    }
+
+    public Object resolve(int index, RecordBatch batch, int row, Context context) {
+        if (this.sources[index] != COLUMN) {
+            return resolve(index, (Map) null, context);
+        }
+
+        int c = getColumns(batch.getSchema())[index];
+        return c < 0 ? null : batch.getValue(row, c);
+    }
+
+    public void bind(PreparedStatement ps, RecordBatch batch, int row, Context context) throws SQLException {
+        RecordSchema schema = batch.getSchema();
+        int[] columns = getColumns(schema);
+
+        for (int i = 0; i < this.size; i++) {
+            int c = columns[i];
+            if (this.sources[i] != COLUMN) {
+                setValue(ps, i + 1, resolve(i, null, context), this.sqlTypes[i]);
+            } else if (c < 0 || batch.isNull(row, c)) {
+                setValue(ps, i + 1, null, this.sqlTypes[i]);
+            } else {
+                switch (schema.getType(c)) {
+                    case LONG:
+                        setLong(ps, i + 1, batch.getLong(row, c), this.sqlTypes[i]);
+                        break;
+                    case DOUBLE:
+                        setDouble(ps, i + 1, batch.getDouble(row, c), this.sqlTypes[i]);
+                        break;
+                    default:
+                        setValue(ps, i + 1, batch.getValue(row, c), this.sqlTypes[i]);
+                        break;
+                }
+            }
+        }
+    }
+
+    // 값을 미리 평가해두고 다른 쓰레드에서 바인딩하는 경우
+    public void resolve(Map item, Context context, Object[] values) {
+        for (int i = 0; i < this.size; i++) {
+            values[i] = resolve(i, item, context);
+        }
+    }
+
+    public void resolve(RecordBatch batch, int row, Context context, Object[] values) {
+        for (int i = 0; i < this.size; i++) {
+            values[i] = resolve(i, batch, row, context);
+        }
+    }
+
+    public void bind(PreparedStatement ps, Object[] values) throws SQLException {
+        for (int i = 0; i < this.size; i++) {
+            setValue(ps, i + 1, values[i], this.sqlTypes[i]);
+        }
+    }
+
+    private int[] getColumns(RecordSchema schema) {
+        if (schema != this.boundSchema) {
+            this.columns = new int[this.size];
+            for (int i = 0; i < this.size; i++) {
+                this.columns[i] = this.sources[i] == COLUMN ? schema.indexOf(this.keys[i]) : -1;
+            }
+            this.boundSchema = schema;
+        }
+        return this.columns;
+    }
+
+    // 원시 타입 컬럼도 대상 컬럼 타입에 맞는 setter를 사용한다
+    private static void setLong(PreparedStatement ps, int index, long value, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.OTHER:
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                ps.setLong(index, value);
+                break;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                ps.setDouble(index, value);
+                break;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                ps.setString(index, Long.toString(value));
+                break;
+            default:
+                ps.setObject(index, value, sqlType);
+                break;
+        }
+    }
+
+    private static void setDouble(PreparedStatement ps, int index, double value, int sqlType) throws SQLException {
+        switch (sqlType) {
+            case Types.OTHER:
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                ps.setDouble(index, value);
+                break;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                // NaN, Infinity는 BigDecimal로 표현할 수 없다
+                if (Double.isNaN(value) || Double.isInfinite(value)) {
+                    ps.setDouble(index, value);
+                } else {
+                    ps.setBigDecimal(index, BigDecimal.valueOf(value));
+                }
+                break;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                ps.setString(index, Double.toString(value));
+                break;
+            default:
+                ps.setObject(index, value, sqlType);
+                break;
+        }
+    }
+
+    static void setValue(PreparedStatement ps, int index, Object value, int sqlType) throws SQLException {
+        if (value == null) {
+            if (sqlType == Types.OTHER) {
+                ps.setObject(index, null);
+            } else {
+                ps.setNull(index, sqlType);
+            }
+            return;
+        }
+        if (value instanceof LobHandle) {
+            ((LobHandle) value).bind(ps, index);
+            return;
+        }
+
+        switch (sqlType) {
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGNVARCHAR:
+                if (value instanceof String) {
+                    ps.setString(index, (String) value);
+                    return;
+                }
+                break;
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                if (value instanceof Integer || value instanceof Long || value instanceof Short) {
+                    ps.setLong(index, ((Number) value).longValue());
+                    return;
+                }
+                break;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                if (value instanceof BigDecimal) {
+                    ps.setBigDecimal(index, (BigDecimal) value);
+                    return;
+                }
+                if (value instanceof Integer || value instanceof Long) {
+                    ps.setLong(index, ((Number) value).longValue());
+                    return;
+                }
+                break;
+            case Types.REAL:
+            case Types.FLOAT:
+            case Types.DOUBLE:
+                if (value instanceof Number) {
+                    ps.setDouble(index, ((Number) value).doubleValue());
+                    return;
+                }
+                break;
+            case Types.CLOB:
+            case Types.NCLOB:
+                if (value instanceof String) {
+                    String text = (String) value;
+                    ps.setCharacterStream(index, new StringReader(text), text.length());
+                    return;
+                }
+                break;
+            case Types.DATE:
+            case Types.TIMESTAMP:
+                if (value instanceof Timestamp) {
+                    ps.setTimestamp(index, (Timestamp) value);
+                    return;
+                }
+                if (value instanceof java.sql.Date) {
+                    ps.setDate(index, (java.sql.Date) value);
+                    return;
+                }
+                break;
+            default:
+                break;
+        }
+
+        setByValueType(ps, index, value);
+    }
+
+    private static void setByValueType(PreparedStatement ps, int index, Object value) throws SQLException {
+        if (value instanceof String) {
+            ps.setString(index, (String) value);
+        } else if (value instanceof Integer) {
+            ps.setInt(index, (Integer) value);
+        } else if (value instanceof Long) {
+            ps.setLong(index, (Long) value);
+        } else if (value instanceof BigDecimal) {
+            ps.setBigDecimal(index, (BigDecimal) value);
+        } else if (value instanceof Double) {
+            ps.setDouble(index, (Double) value);
+        } else if (value instanceof Timestamp) {
+            ps.setTimestamp(index, (Timestamp) value);
+        } else if (value instanceof java.sql.Date) {
+            ps.setDate(index, (java.sql.Date) value);
+        } else {
+            ps.setObject(index, value);
+        }
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.Context.CONTEXT_KEY;
+import com.flatide.floodgate.agent.flow.module.ModuleContext.MODULE_CONTEXT;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    SQL, CONDITION의 {CONTEXT.path} 를 문자열로 치환하지 않고 바인드 변수(?)로 바꾼다
+    값만 다른 요청들이 같은 SQL을 사용하므로 hard parse 없이 cursor와 statement cache를 공유한다
+
+    path가 context의 key(CHANNEL_CONTEXT, SEQUENCE 등)로 시작하는 경우만 바꾸므로 '{1,2}', '{"a":1}' 같은 리터럴은 그대로 남는다
+    '{...}' 처럼 따옴표로 감싼 경우 따옴표도 함께 바뀌며, '%{...}%' 처럼 문자열의 일부인 경우는 바인딩할 수 없으므로 오류가 발생한다
+ */
+public final class BoundSql {
+    // Context.evaluate()와 같은 형태, {fn ...}, {ts '...'} 같은 JDBC escape는 공백을 포함하므로 제외된다
+    private static final Pattern PLACEHOLDER = Pattern.compile("\\{([^\\s{}]+)\\}");
+
+    private static final Set<String> ROOTS = new HashSet<>();
+    static {
+        for (CONTEXT_KEY key : CONTEXT_KEY.values()) {
+            ROOTS.add(key.name());
+        }
+        for (MODULE_CONTEXT key : MODULE_CONTEXT.values()) {
+            ROOTS.add(key.name());
+        }
+    }
+
+    private final String sql;
+    private final List<String> params;
+
+    private BoundSql(String sql, List<String> params) {
+        this.sql = sql;
+        this.params = params;
+    }
+
+    public static BoundSql parse(String text) {
+        if (text == null || text.indexOf('{') < 0) {
+            return new BoundSql(text, Collections.<String>emptyList());
+        }
+
+        List<String> params = new ArrayList<>();
+        StringBuilder builder = new StringBuilder();
+        Matcher matcher = PLACEHOLDER.matcher(text);
+        int position = 0;
+        // position까지 열린 문자열 리터럴이 있는지, '' 는 두번 바뀌므로 따로 처리하지 않는다
+        boolean literal = false;
+        while (matcher.find()) {
+            String path = matcher.group(1);
+            if (!isContextPath(path)) {
+                continue;
+            }
+
+            int start = matcher.start();
+            int end = matcher.end();
+            for (int i = position; i < start; i++) {
+                if (text.charAt(i) == '\'') {
+                    literal = !literal;
+                }
+            }
+
+            if (literal) {
+                // '{...}' 전체가 하나의 리터럴인 경우만 바인딩한다
+                if (text.charAt(start - 1) != '\'' || end >= text.length() || text.charAt(end) != '\''
+                        || !isOpening(text, start - 1)) {
+                    throw new IllegalArgumentException("{" + path + "} inside a string literal cannot be bound, use '{" + path + "}' alone or concatenate it.");
+                }
+                builder.append(text, position, start - 1).append('?');
+                position = end + 1;
+                literal = false;
+            } else {
+                builder.append(text, position, start).append('?');
+                position = end;
+            }
+            params.add(path);
+        }
+        builder.append(text, position, text.length());
+
+        return new BoundSql(builder.toString(), params);
+    }
+
+    // index의 따옴표가 리터럴을 여는 따옴표인지
+    private static boolean isOpening(String text, int index) {
+        boolean literal = false;
+        for (int i = 0; i < index; i++) {
+            if (text.charAt(i) == '\'') {
+                literal = !literal;
+            }
+        }
+        return !literal;
+    }
+
+    public static boolean isContextPath(String path) {
+        int dot = path.indexOf('.');
+        return ROOTS.contains(dot < 0 ? path : path.substring(0, dot));
+    }
+
+    public String getSql() {
+        return this.sql;
+    }
+
+    public List<String> getParams() {
+        return this.params;
+    }
+
+    public List<Object> resolve(Context context) {
+        List<Object> values = new ArrayList<>(this.params.size());
+        for (String path : this.params) {
+            values.add(context.get(path));
+        }
+        return values;
+    }
+
+    // "{CONTEXT.path}" 하나로 된 값은 context의 값을 타입 그대로 사용한다
+    public static Object resolveValue(Context context, Object value) {
+        if (value instanceof String) {
+            String str = (String) value;
+            Matcher matcher = PLACEHOLDER.matcher(str);
+            if (matcher.matches() && isContextPath(matcher.group(1))) {
+                return context.get(matcher.group(1));
+            }
+        }
+        return value;
+    }
+
+    // 바인딩한 다음 파라미터의 index를 리턴한다
+    public static int bind(PreparedStatement ps, int index, List<Object> values) throws SQLException {
+        for (Object value : values) {
+            if (value == null) {
+                ps.setNull(index++, Types.VARCHAR);
+            } else {
+                BindingPlan.setValue(ps, index++, value, Types.OTHER);
+            }
+        }
+        return index;
+    }
+}
@@ -0,0 +1,307 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
+import com.flatide.floodgate.system.security.FloodgateSecurity;
+import com.flatide.floodgate.system.utils.PropertyMap;
+import com.zaxxer.hikari.HikariConfig;
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.sql.Connection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    JDBC connector용 커넥션 풀 레지스트리
+
+    datasource 이름(이름이 없는 경우 URL과 USER)별로 HikariCP 풀을 하나씩 유지한다.
+    접속 정보가 변경되면 새로운 풀로 교체하고, 이전 풀은 사용중인 커넥션이 모두 반환된 후 닫는다.
+ */
+public final class ConnectionPoolManager {
+    private static final Logger logger = LogManager.getLogger(ConnectionPoolManager.class);
+
+    private static final ConnectionPoolManager instance = new ConnectionPoolManager();
+
+    // 이전 풀을 닫기 전에 사용중인 커넥션의 반환을 기다리는 최대 시간
+    private static final long RETIRE_TIMEOUT = 10 * 60 * 1000L;
+
+    // MAXPOOLSIZE가 없는 경우 HikariCP의 기본값
+    private static final int DEFAULT_MAX_POOL_SIZE = 10;
+
+    private final Map<String, Pool> pools = new ConcurrentHashMap<>();
+    // 교체되어 사용중인 커넥션의 반환을 기다리는 풀
+    private final Set<Pool> retiring = ConcurrentHashMap.newKeySet();
+
+    private final ScheduledExecutorService retirer = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "floodgate-pool-retire");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static class Pool {
+        final String name;
+        final String signature;
+        final HikariDataSource dataSource;
+
+        final AtomicLong acquired = new AtomicLong(0);
+        final AtomicLong waitTotal = new AtomicLong(0);
+        final AtomicLong waitMax = new AtomicLong(0);
+
+        Pool(String name, String signature, HikariDataSource dataSource) {
+            this.name = name;
+            this.signature = signature;
+            this.dataSource = dataSource;
+        }
+
+        Connection getConnection() throws Exception {
+            long start = System.nanoTime();
+            Connection connection = this.dataSource.getConnection();
+            long wait = (System.nanoTime() - start) / 1000000;
+
+            this.acquired.incrementAndGet();
+            this.waitTotal.addAndGet(wait);
+            long max = this.waitMax.get();
+            while (wait > max && !this.waitMax.compareAndSet(max, wait)) {
+                max = this.waitMax.get();
+            }
+
+            return connection;
+        }
+
+        Map<String, Object> getInfo() {
+            Map<String, Object> info = new LinkedHashMap<>();
+
+            info.put("Url", this.dataSource.getJdbcUrl());
+            info.put("MinimumIdle", this.dataSource.getMinimumIdle());
+            info.put("MaximumPoolSize", this.dataSource.getMaximumPoolSize());
+
+            HikariPoolMXBean bean = this.dataSource.getHikariPoolMXBean();
+            if (bean != null) {
+                info.put("ActiveConnections", bean.getActiveConnections());
+                info.put("IdleConnections", bean.getIdleConnections());
+                info.put("TotalConnections", bean.getTotalConnections());
+                info.put("ThreadsAwaitingConnection", bean.getThreadsAwaitingConnection());
+            }
+
+            long count = this.acquired.get();
+            info.put("Acquired", count);
+            info.put("WaitTotalMillis", this.waitTotal.get());
+            info.put("WaitAverageMillis", count == 0 ? 0 : this.waitTotal.get() / count);
+            info.put("WaitMaxMillis", this.waitMax.get());
+
+            return info;
+        }
+    }
+
+    private ConnectionPoolManager() {
+    }
+
+    public static ConnectionPoolManager shared() {
+        return instance;
+    }
+
+    public boolean isEnabled(Map connectInfo) {
+        String pool = PropertyMap.getStringDefault(connectInfo, ConnectorTag.POOL, "TRUE");
+        return !"FALSE".equalsIgnoreCase(pool);
+    }
+
+    public String getKey(String name, Map connectInfo) {
+        return getKey(name, PropertyMap.getString(connectInfo, ConnectorTag.URL), PropertyMap.getString(connectInfo, ConnectorTag.USER));
+    }
+
+    // 풀과 SchemaCache가 같은 key를 사용한다
+    public String getKey(String name, String url, String user) {
+        if (name != null && !name.isEmpty()) {
+            return name;
+        }
+        return url + "#" + user;
+    }
+
+    // 풀의 최대 커넥션 수, 풀을 사용하지 않으면 0
+    public int getMaxPoolSize(Map connectInfo) {
+        if (!isEnabled(connectInfo)) {
+            return 0;
+        }
+        Integer maxPoolSize = PropertyMap.getInteger(connectInfo, ConnectorTag.MAXPOOLSIZE);
+        return maxPoolSize != null ? maxPoolSize : DEFAULT_MAX_POOL_SIZE;
+    }
+
+    public Connection getConnection(String name, Map connectInfo) throws Exception {
+        String key = getKey(name, connectInfo);
+        String signature = makeSignature(connectInfo);
+
+        Pool pool = this.pools.get(key);
+        if (pool == null || !pool.signature.equals(signature)) {
+            synchronized (this) {
+                pool = this.pools.get(key);
+                if (pool == null || !pool.signature.equals(signature)) {
+                    Pool old = pool;
+                    pool = createPool(key, signature, connectInfo);
+                    this.pools.put(key, pool);
+
+                    if (old != null) {
+                        logger.info("Connect info of " + key + " is changed, replacing connection pool.");
+                        retire(old);
+                    }
+                }
+            }
+        }
+
+        return pool.getConnection();
+    }
+
+    public void invalidate(String key) {
+        Pool pool = this.pools.remove(key);
+        if (pool != null) {
+            retire(pool);
+        }
+        SchemaCache.shared().invalidate(key);
+    }
+
+    public Map<String, Object> getInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        for (Map.Entry<String, Pool> entry : this.pools.entrySet()) {
+            info.put(entry.getKey(), entry.getValue().getInfo());
+        }
+        return info;
+    }
+
+    // key의 풀 상태와 커넥션 대기 시간, 풀이 없으면 null
+    public Map<String, Object> getInfo(String key) {
+        Pool pool = this.pools.get(key);
+        return pool == null ? null : pool.getInfo();
+    }
+
+    // agent 종료시 호출한다, 교체 대기중인 풀도 바로 닫는다
+    public void close() {
+        synchronized (this) {
+            for (Pool pool : this.pools.values()) {
+                pool.dataSource.close();
+            }
+            this.pools.clear();
+        }
+        for (Pool pool : this.retiring) {
+            pool.dataSource.close();
+        }
+        this.retiring.clear();
+    }
+
+    private String makeSignature(Map connectInfo) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.URL)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.USER)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.PASSWORD)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.MINPOOLSIZE)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.MAXPOOLSIZE)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.IDLETIMEOUT)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.STMTCACHESIZE)).append('|');
+        builder.append(PropertyMap.getString(connectInfo, ConnectorTag.ISOLATION)).append('|');
+        builder.append(PropertyMap.get(connectInfo, ConnectorTag.INITSQL)).append('|');
+        builder.append(PropertyMap.get(connectInfo, ConnectorTag.NLS));
+        return builder.toString();
+    }
+
+    private Pool createPool(String key, String signature, Map connectInfo) throws Exception {
+        String url = PropertyMap.getString(connectInfo, ConnectorTag.URL);
+        String user = PropertyMap.getString(connectInfo, ConnectorTag.USER);
+        String password = PropertyMap.getString(connectInfo, ConnectorTag.PASSWORD);
+        password = FloodgateSecurity.shared().decrypt(password);
+
+        HikariConfig config = new HikariConfig();
+        config.setPoolName("floodgate-" + key);
+        config.setJdbcUrl(url);
+        config.setUsername(user);
+        config.setPassword(password);
+        config.setAutoCommit(false);
+
+        Integer maxPoolSize = PropertyMap.getInteger(connectInfo, ConnectorTag.MAXPOOLSIZE);
+        if (maxPoolSize != null) {
+            config.setMaximumPoolSize(maxPoolSize);
+        }
+        Integer minPoolSize = PropertyMap.getInteger(connectInfo, ConnectorTag.MINPOOLSIZE);
+        if (minPoolSize != null) {
+            config.setMinimumIdle(Math.min(minPoolSize, config.getMaximumPoolSize()));
+        }
+        // seconds
+        Integer idleTimeout = PropertyMap.getInteger(connectInfo, ConnectorTag.IDLETIMEOUT);
+        if (idleTimeout != null) {
+            config.setIdleTimeout(idleTimeout * 1000L);
+        }
+
+        // 드라이버 속성과 세션 설정은 물리 커넥션을 만들 때 한번만 적용된다
+        Dialect dialect = Dialect.get(PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE));
+        config.setDataSourceProperties(dialect.getConnectionProperties(connectInfo));
+        if (Dialect.getIsolation(connectInfo) >= 0) {
+            config.setTransactionIsolation("TRANSACTION_" + PropertyMap.getString(connectInfo, ConnectorTag.ISOLATION).toUpperCase());
+        }
+        List<String> sessionSql = dialect.getSessionSql(connectInfo);
+        if (sessionSql.size() == 1) {
+            config.setConnectionInitSql(sessionSql.get(0));
+        } else if (sessionSql.size() > 1) {
+            // connectionInitSql은 하나의 문장만 실행하므로 여러 문장은 블록으로 묶는다
+            config.setConnectionInitSql(dialect.joinSessionSql(sessionSql));
+        }
+
+        logger.info("Connection pool for " + key + " is created : " + url);
+        return new Pool(key, signature, new HikariDataSource(config));
+    }
+
+    private void retire(Pool pool) {
+        this.retiring.add(pool);
+        long start = System.currentTimeMillis();
+        this.retirer.execute(() -> retire(pool, start));
+    }
+
+    // 사용중인 커넥션이 모두 반환되거나 RETIRE_TIMEOUT이 지나면 닫고, 아니면 1초 후에 다시 확인한다
+    private void retire(Pool pool, long start) {
+        if (pool.dataSource.isClosed()) {
+            this.retiring.remove(pool);
+            return;
+        }
+        HikariPoolMXBean bean = pool.dataSource.getHikariPoolMXBean();
+        if (bean != null && bean.getActiveConnections() > 0 && System.currentTimeMillis() - start < RETIRE_TIMEOUT) {
+            this.retirer.schedule(() -> retire(pool, start), 1, TimeUnit.SECONDS);
+            return;
+        }
+        try {
+            pool.dataSource.close();
+            logger.info("Connection pool for " + pool.name + " is closed.");
+        } finally {
+            this.retiring.remove(pool);
+        }
+    }
+}
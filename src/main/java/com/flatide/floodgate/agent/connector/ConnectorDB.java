@@ -26,7 +26,8 @@ package com.flatide.floodgate.agent.connector;
 
 import com.flatide.floodgate.agent.Context;
 import com.flatide.floodgate.agent.Context.CONTEXT_KEY;
-import com.flatide.floodgate.agent.connector.function.FloodgateFunctionManager;
+import com.flatide.floodgate.agent.connector.bulk.BulkLoader;
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
 import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
 import com.flatide.floodgate.agent.handler.FloodgateHandlerManager;
 import com.flatide.floodgate.agent.handler.FloodgateHandlerManager.Step;
@@ -37,21 +38,26 @@ import com.flatide.floodgate.agent.flow.module.Module;
 import com.flatide.floodgate.agent.flow.module.ModuleContext;
 import com.flatide.floodgate.agent.flow.module.ModuleContext.MODULE_CONTEXT;
 import com.flatide.floodgate.agent.flow.rule.FunctionProcessor;
+import com.flatide.floodgate.agent.flow.stream.ByteSink;
+import com.flatide.floodgate.agent.flow.stream.LobHandle;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+import com.flatide.floodgate.agent.flow.stream.RecordSchema;
+import com.flatide.floodgate.agent.flow.stream.RecordSchema.ColumnType;
+import com.flatide.floodgate.agent.flow.stream.RowEncoder;
 import com.flatide.floodgate.system.FlowEnv;
 import com.flatide.floodgate.system.security.FloodgateSecurity;
 import com.flatide.floodgate.system.utils.DBUtils;
 import com.flatide.floodgate.system.utils.PropertyMap;
 
-//import com.zaxxer.hikari.HikariConfig;
-//import com.zaxxer.hikari.HikariDataSource;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import javax.sql.DataSource;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
 import java.sql.*;
 import java.sql.Date;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -59,7 +65,28 @@ public class ConnectorDB extends ConnectorBase {
     // NOTE spring boot의 logback을 사용하려면 LogFactory를 사용해야 하나, 이 경우 log4j 1.x와 충돌함(SoapUI가 사용)
     private static final Logger logger = LogManager.getLogger(ConnectorDB.class);
 
-    private static final ConcurrentHashMap<String, DataSource> pools = new ConcurrentHashMap<>();
+    private static final int EXPORT_BUFFER = 64 * 1024;
+
+    /*
+        KEYSET : {"COLUMN": "ID", "AFTER": "{CHANNEL_CONTEXT.REQUEST_PARAMS.last}"}
+     */
+    public enum KEYSET {
+        COLUMN,
+        AFTER
+    }
+
+    /*
+        COUNT의 ESTIMATE
+            OFF      : SELECT COUNT(*), 기본값
+            ON       : 통계 정보 또는 실행 계획의 예상 행 수, 얻을 수 없으면 건수를 알리지 않는다
+            FALLBACK : ON과 같으나 얻을 수 없으면 SELECT COUNT(*)
+        true, false는 ON, OFF와 같다
+     */
+    public enum ESTIMATE {
+        OFF,
+        ON,
+        FALLBACK
+    }
 
     Context channelContext = null;
     ModuleContext moduleContext = null;
@@ -76,261 +103,274 @@ public class ConnectorDB extends ConnectorBase {
 
     private Integer batchSize = 0;
     private String query = "";
-    private PreparedStatement ps = null;
+    // cancel()은 다른 thread에서 호출된다
+    private volatile PreparedStatement ps = null;
     private ResultSet resultSet = null;
+    private RecordSchema readSchema = null;
+    // 이 크기보다 큰 LOB은 LobHandle로 전달한다
+    private long lobThreshold = -1;
+    private PartitionedReader partitionedReader = null;
+    private Watermark watermark = null;
 
     private Integer batchCount = 0;
 
-    private List<String> param;
+    private BindingPlan bindingPlan;
+
+    private BulkLoader bulkLoader = null;
+
+    // UPSERT with STAGING
+    private String mergeQuery = null;
+
+    private Boolean async = false;
+    private AsyncBatchExecutor asyncBatch = null;
+
+    private AutoTuner autoTuner = null;
+
+    private boolean isolate = false;
+    private BatchIsolator isolator = null;
+    private boolean fetchTuned = false;
 
     private int sent = 0;
 
+    // COMMITSIZE, COMMITINTERVAL
+    private int commitSize = 0;
+    private long commitInterval = 0;
+    private int committed = 0;
+    private long lastCommit = 0;
+
+    // RESUMEFROM
+    private int resumeFrom = 0;
+    private int skipped = 0;
+
     private int updateCount = 0;
 
     private int errorPosition = -1;
 
     private long cur;
 
-    private static class DBFunctionProcessorOracle implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
-            //MappingRule.Function function = MappingRule.Function.valueOf(func);
+    private Dialect dialect;
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "sysdate";
-                default:
-                    return "?";
-            }
-        }
+    @Override
+    public FunctionProcessor getFunctionProcessor(String type) {
+        return Dialect.get(type).getFunctionProcessor();
     }
 
-    private static class DBFunctionProcessorTibero implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
+    @Override
+    public void connect(Context context, Module module) throws Exception {
+        cur = System.currentTimeMillis();
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "sysdate";
-                default:
-                    return "?";
-            }
-        }
-    }
+        this.module = module;
 
-    private static class DBFunctionProcessorMySql implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
+        connectInfo = (Map) module.getContext().get(MODULE_CONTEXT.CONNECT_INFO);
+        this.dialect = Dialect.get(PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE));
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "now()";
-                default:
-                    return "?";
+        channelContext = (Context) this.module.getFlowContext().get(CONTEXT_KEY.CHANNEL_CONTEXT);
+        moduleContext = module.getContext();
+
+        String name = (String) moduleContext.get(MODULE_CONTEXT.CONNECT_NAME);
+        this.connection = openConnection(name, connectInfo);
+
+        this.connection.setAutoCommit(false);
+
+        // 풀 상태와 커넥션 대기 시간은 module metrics로 남긴다
+        if (ConnectionPoolManager.shared().isEnabled(connectInfo)) {
+            Map<String, Object> poolInfo = ConnectionPoolManager.shared().getInfo(ConnectionPoolManager.shared().getKey(name, connectInfo));
+            if (poolInfo != null) {
+                module.putMetric("POOL", poolInfo);
             }
         }
+
+        if (logger.isDebugEnabled()) {
+            DatabaseMetaData meta = this.connection.getMetaData();
+            logger.debug(meta.getDatabaseProductName() + " : " + meta.getDatabaseProductVersion());
+        }
     }
 
-    private static class DBFunctionProcessorMariaDB implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
+    static Connection openConnection(String name, Map connectInfo) throws Exception {
+        if (ConnectionPoolManager.shared().isEnabled(connectInfo)) {
+            return ConnectionPoolManager.shared().getConnection(name, connectInfo);
+        }
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "now()";
-                default:
-                    return "?";
-            }
+        Dialect dialect = Dialect.get(PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE));
+
+        String url = PropertyMap.getString(connectInfo, ConnectorTag.URL);
+        String user = PropertyMap.getString(connectInfo, ConnectorTag.USER);
+        String password = PropertyMap.getString(connectInfo, ConnectorTag.PASSWORD);
+        password = FloodgateSecurity.shared().decrypt(password);
+
+        Properties properties = dialect.getConnectionProperties(connectInfo);
+        if (user != null) {
+            properties.setProperty("user", user);
+        }
+        if (password != null) {
+            properties.setProperty("password", password);
         }
+        Connection connection = DriverManager.getConnection(url, properties);
+        try {
+            dialect.initSession(connection, connectInfo);
+        } catch (SQLException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
     }
 
-    private static class DBFunctionProcessorPostgreSQL implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
+    @Override
+    public void beforeCreate(MappingRule mappingRule) throws Exception {
+        checkUpsertKey(mappingRule);
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "now()";
-                default:
-                    return "?";
-            }
+        this.batchSize = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.BATCHSIZE, 1);
+        this.async = (Boolean) PropertyMap.getDefault(module.getSequences(), FlowTag.ASYNCBATCH, Boolean.valueOf(false));
+        this.isolate = "ISOLATE".equalsIgnoreCase(PropertyMap.getStringDefault(module.getSequences(), FlowTag.ERRORMODE, "ABORT"));
+        if (this.isolate) {
+            // 실패한 batch를 다시 실행해야 하므로 flow 쓰레드에서 실행한다
+            this.async = false;
         }
-    }
 
-    private static class DBFunctionProcessorGreenplum implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
+        this.commitSize = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.COMMITSIZE, 0);
+        this.commitInterval = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.COMMITINTERVAL, 0) * 1000L;
+        this.lastCommit = System.currentTimeMillis();
+        this.resumeFrom = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.RESUMEFROM, 0);
 
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "now()";
-                default:
-                    return "?";
-            }
+        Boolean autoTune = (Boolean) PropertyMap.getDefault(module.getSequences(), FlowTag.AUTOTUNE, Boolean.valueOf(false));
+        if (autoTune && !this.async) {
+            this.autoTuner = new AutoTuner(PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.BATCHSIZE, AutoTuner.MIN_BATCH));
+            this.batchSize = this.autoTuner.getBatchSize();
+            this.module.putMetric(FlowTag.BATCHSIZE.name(), this.batchSize);
         }
     }
 
-    private static class DBFunctionProcessorMSSQL implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
-
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "getDate()";
-                default:
-                    return "?";
+    // UPSERT는 KEY 컬럼으로 대상 행을 찾는다, KEY 컬럼만 있으면 없는 행만 추가한다
+    private void checkUpsertKey(MappingRule mappingRule) {
+        if (!FlowTag.UPSERT.name().equals(PropertyMap.getString(module.getSequences(), FlowTag.ACTION))) {
+            return;
+        }
+        for (MappingRuleItem item : mappingRule.getRules()) {
+            if (item.isKey()) {
+                return;
             }
         }
+        throw new IllegalArgumentException("UPSERT of " + this.module.getName() + " needs at least one KEY column in the rule, e.g. \"ID:KEY\".");
     }
 
-    private static class DBFunctionProcessorDB2 implements FunctionProcessor {
-        public Object process(MappingRuleItem item) {
-            String func = item.getSourceName();
-
-            switch (func) {
-                case "TARGET_DATE":
-                    //item.setAction(MappingRuleItem.RuleAction.literal);
-                    return "CURRENT TIMESTAMP";
-                default:
-                    return "?";
+    // 바인딩되는 컬럼 값의 크기를 측정한다, 함수는 다시 평가하지 않는다
+    private void sampleRow(RecordBatch batch, int row, Map item) {
+        long bytes = 0;
+        for (int i = 0; i < this.bindingPlan.size(); i++) {
+            if (this.bindingPlan.isColumn(i)) {
+                Object value = batch != null ? this.bindingPlan.resolve(i, batch, row, moduleContext) : this.bindingPlan.resolve(i, item, moduleContext);
+                bytes += AutoTuner.estimate(value);
             }
         }
+        this.autoTuner.addSample(bytes);
     }
 
-    static FunctionProcessor PRE_PROCESSOR_ORACLE = new DBFunctionProcessorOracle();
-    static FunctionProcessor PRE_PROCESSOR_TIBERO = new DBFunctionProcessorTibero();
-    static FunctionProcessor PRE_PROCESSOR_MYSQL = new DBFunctionProcessorMySql();
-    static FunctionProcessor PRE_PROCESSOR_MARIADB = new DBFunctionProcessorMariaDB();
-    static FunctionProcessor PRE_PROCESSOR_POSTGRESQL = new DBFunctionProcessorPostgreSQL();
-    static FunctionProcessor PRE_PROCESSOR_GREENPLUM = new DBFunctionProcessorGreenplum();
-    static FunctionProcessor PRE_PROCESSOR_MSSQL = new DBFunctionProcessorMSSQL();
-    static FunctionProcessor PRE_PROCESSOR_DB2 = new DBFunctionProcessorDB2();
-
-    @Override
-    public FunctionProcessor getFunctionProcessor(String type) {
-        if( type == null ) {
-            return PRE_PROCESSOR_ORACLE;
-        }
-        switch(type.toUpperCase()) {
-            case "ORACLE":
-                return PRE_PROCESSOR_ORACLE;
-            case "TIBERO":
-                return PRE_PROCESSOR_TIBERO;
-            case "MYSQL":
-                return PRE_PROCESSOR_MYSQL;
-            case "MARIADB":
-                return PRE_PROCESSOR_MARIADB;
-            case "POSTGRESQL":
-                return PRE_PROCESSOR_POSTGRESQL;
-            case "GREENPLUM":
-                return PRE_PROCESSOR_GREENPLUM;
-            case "MSSQL":
-                return PRE_PROCESSOR_MSSQL;
-            case "DB2":
-                return PRE_PROCESSOR_DB2;
-            default:
-                return PRE_PROCESSOR_ORACLE;
+    private void tune(int rows, long elapsed) {
+        if (this.autoTuner != null) {
+            this.batchSize = this.autoTuner.adjustBatch(rows, elapsed);
+            this.module.putMetric(FlowTag.BATCHSIZE.name(), this.batchSize);
         }
     }
 
-    @Override
-    public void connect(Context context, Module module) throws Exception {
-        cur = System.currentTimeMillis();
-
-        this.module = module;
-
-        connectInfo = (Map) module.getContext().get(MODULE_CONTEXT.CONNECT_INFO);
-        String url = PropertyMap.getString(connectInfo, ConnectorTag.URL);
-        String user = PropertyMap.getString(connectInfo, ConnectorTag.USER);
-        String password = PropertyMap.getString(connectInfo, ConnectorTag.PASSWORD);
-
-        channelContext = (Context) this.module.getFlowContext().get(CONTEXT_KEY.CHANNEL_CONTEXT);
-        moduleContext = module.getContext();
-
-        /*if( this.name != null && !this.name.isEmpty() ) {
-            DataSource dataSource = pools.get(this.name);
-            if( dataSource == null ) {
-                HikariConfig config = new HikariConfig();
-                config.setJdbcUrl(this.url);
-                config.setUsername(this.user);
-                config.setPassword(this.password);
-                dataSource = new HikariDataSource(config);
-                pools.put(this.name, dataSource);
-            }
-            this.connection = dataSource.getConnection();
-        } else*/ {
-            password = FloodgateSecurity.shared().decrypt(password);
-            this.connection = DriverManager.getConnection(url, user, password);
+    /*
+        RESUMEFROM : 이전 실행에서 commit된 행은 건너뛴다
+     */
+    private void skipResumed(List<Map> itemList) {
+        if (itemList == null || this.skipped >= this.resumeFrom) {
+            return;
         }
+        int count = Math.min(this.resumeFrom - this.skipped, itemList.size());
+        itemList.subList(0, count).clear();
+        this.skipped += count;
+    }
 
-        this.connection.setAutoCommit(false);
-
-        DatabaseMetaData meta = this.connection.getMetaData();
-        logger.debug(meta.getDatabaseProductName() + " : " + meta.getDatabaseProductVersion());
+    // 처리가 끝난 원본 행의 수, ISOLATE로 거부된 행을 포함한다
+    private int getOffset() {
+        return this.resumeFrom + this.sent + (this.isolator != null ? this.isolator.getRejected() : 0);
     }
 
-    @Override
-    public void beforeCreate(MappingRule mappingRule) throws Exception {
-        this.batchSize = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.BATCHSIZE, 1);
+    /*
+        COMMITSIZE 행 또는 COMMITINTERVAL 초마다 중간 commit 한다
+        commit된 위치는 COMMITTED로 기록되며 실패시 RESUMEFROM으로 이어서 실행할 수 있다
+     */
+    private void checkpoint() throws Exception {
+        if (this.commitSize <= 0 && this.commitInterval <= 0) {
+            return;
+        }
+        boolean bySize = this.commitSize > 0 && this.sent - this.committed >= this.commitSize;
+        boolean byTime = this.commitInterval > 0 && System.currentTimeMillis() - this.lastCommit >= this.commitInterval;
+        if (bySize || byTime) {
+            commit();
+        }
     }
 
     @Override
     public int createPartially(List<Map> itemList, MappingRule mappingRule) throws Exception {
-        if( this.query.isEmpty()) {
+        skipResumed(itemList);
+        if (itemList != null && itemList.isEmpty()) {
+            return sent;
+        }
+        if( this.query.isEmpty() && this.bulkLoader == null) {
             if (itemList == null || itemList.isEmpty()) {
                 return 0;
             }
-            DocumentTemplate documentTemplate = getDocumentTemplate();
+            this.bulkLoader = prepareBulkLoader(mappingRule);
+        }
+        if (this.bulkLoader != null) {
+            load(itemList);
+            if (itemList == null) {
+                flushBulk();
+            }
+            return sent;
+        }
 
-            List<Map<String, Object>> temp = new ArrayList<>();
-            Map<String, Object> one = itemList.get(0);
-            Map<String, Object> copy = new HashMap<>();
-            for( Map.Entry<String, Object> e : one.entrySet() ) {
-                copy.put(e.getKey(), "?");
+        if( this.query.isEmpty()) {
+            prepareInsert(itemList.get(0), mappingRule);
+        }
+
+        if (this.isolate) {
+            createIsolated(itemList);
+            if (itemList == null) {
+                executeIsolated();
+            } else {
+                itemList.clear();
             }
-            temp.add(copy);
+            return sent;
+        }
 
-            this.query = documentTemplate.makeHeader(moduleContext, mappingRule, temp);
-            this.param = mappingRule.getParam();
-            logger.debug(this.query);
-            ps = this.connection.prepareStatement(this.query);
+        if (this.async) {
+            return createAsync(itemList);
         }
 
         try {
             int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
             if (itemList != null) {
+                RecordBatch batch = itemList instanceof RecordBatch ? (RecordBatch) itemList : null;
+                int row = 0;
                 for (Map item : itemList) {
-                    int i = 1;
-                    for (String key : this.param) {
-                        if (key.startsWith(">")) {
-                            Object value = FloodgateFunctionManager.shared().processFunction(moduleContext, key.substring(1)); 
-                            ps.setObject(i++, value);
-                        } else if (key.startsWith("{")) {
-                            Object value = moduleContext.get(key.substring(1, key.length() - 1));
-                            ps.setObject(i++, value);
-                        } else {
-                            ps.setObject(i++, item.get(key));
-                        }
+                    if (batch != null) {
+                        this.bindingPlan.bind(ps, batch, row++, moduleContext);
+                    } else {
+                        this.bindingPlan.bind(ps, item, moduleContext);
                     }
 
                     ps.addBatch();
                     batchCount++;
+                    if (this.autoTuner != null && this.autoTuner.isSampling(batchCount)) {
+                        sampleRow(batch, row - 1, item);
+                    }
                     if (batchCount >= batchSize) {
                         ps.setQueryTimeout(timeout);
                         cur = System.currentTimeMillis();
+                        long start = System.nanoTime();
                         ps.executeBatch();
+                        tune(batchCount, System.nanoTime() - start);
                         this.sent += batchCount;
                         batchCount = 0;
 
                         this.module.setProgress(this.sent);
                         FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+                        checkpoint();
                     }
                 }
                 itemList.clear();
@@ -353,52 +393,163 @@ public class ConnectorDB extends ConnectorBase {
         return sent;
     }
 
+    /*
+        ASYNCBATCH : executeBatch는 I/O 쓰레드에서 수행하고 flow 쓰레드는 다음 batch를 준비한다
+        진행상황과 sent는 batch가 끝난 것을 확인한 flow 쓰레드에서 갱신한다
+     */
+    private int createAsync(List<Map> itemList) throws Exception {
+        if (this.asyncBatch == null) {
+            int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
+            this.asyncBatch = new AsyncBatchExecutor(ps, this.bindingPlan, moduleContext, batchSize, timeout);
+        }
+
+        try {
+            if (itemList != null) {
+                RecordBatch batch = itemList instanceof RecordBatch ? (RecordBatch) itemList : null;
+                int row = 0;
+                for (Map item : itemList) {
+                    boolean full;
+                    if (batch != null) {
+                        full = this.asyncBatch.add(batch, row++);
+                    } else {
+                        full = this.asyncBatch.add(item);
+                    }
+                    if (full) {
+                        updateSent(this.asyncBatch.submit());
+                        checkpoint();
+                    }
+                }
+                itemList.clear();
+            } else {
+                updateSent(this.asyncBatch.submit());
+                updateSent(this.asyncBatch.await());
+            }
+        } catch (ExecutionException e) {
+            errorPosition = this.sent + this.asyncBatch.getFailedCount();
+
+            Throwable cause = e.getCause();
+            cause.printStackTrace();
+            if (cause instanceof Exception) {
+                throw (Exception) cause;
+            }
+            throw e;
+        }
+
+        return sent;
+    }
+
+    /*
+        ERRORMODE : ISOLATE, 실패한 batch를 나누어 다시 실행하고 문제가 되는 행은 DEADLETTER로 기록한다
+     */
+    private void createIsolated(List<Map> itemList) throws Exception {
+        if (this.isolator == null) {
+            int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
+            Map deadLetter = (Map) PropertyMap.get(module.getSequences(), FlowTag.DEADLETTER);
+            DeadLetterWriter writer = DeadLetterWriter.get(deadLetter, this.connection, this.module.getFlow().getFlowId(), this.module.getName());
+            this.isolator = new BatchIsolator(this.connection, ps, this.bindingPlan, moduleContext, writer, timeout);
+        }
+        if (itemList == null) {
+            return;
+        }
+
+        RecordBatch batch = itemList instanceof RecordBatch ? (RecordBatch) itemList : null;
+        int row = 0;
+        for (Map item : itemList) {
+            if (batch != null) {
+                this.isolator.add(batch, row++);
+            } else {
+                this.isolator.add(item);
+            }
+            if (this.isolator.size() >= batchSize) {
+                executeIsolated();
+            }
+        }
+    }
+
+    private void executeIsolated() throws Exception {
+        try {
+            int rejected = this.isolator.getRejected();
+            int rows = this.isolator.size();
+
+            long start = System.nanoTime();
+            int count = this.isolator.execute();
+            if (this.isolator.getRejected() == rejected) {
+                tune(rows, System.nanoTime() - start);
+            } else {
+                logger.warn((this.isolator.getRejected() - rejected) + " rows are rejected by " + this.module.getName());
+                this.module.putMetric("REJECTED", this.isolator.getRejected());
+            }
+            updateSent(count);
+            checkpoint();
+        } catch (Exception e) {
+            errorPosition = this.sent;
+
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private void updateSent(int count) throws Exception {
+        if (count > 0) {
+            this.sent += count;
+            this.module.setProgress(this.sent);
+            FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+        }
+    }
+
     @Override
     public int create(List<Map> itemList, MappingRule mappingRule) throws Exception {
-        if (this.query.isEmpty()) {
-            DocumentTemplate documentTemplate = getDocumentTemplate();
+        skipResumed(itemList);
+        if (itemList.isEmpty()) {
+            return sent;
+        }
+        if (this.query.isEmpty() && this.bulkLoader == null) {
+            this.bulkLoader = prepareBulkLoader(mappingRule);
+        }
+        if (this.bulkLoader != null) {
+            load(itemList);
+            flushBulk();
+            return sent;
+        }
 
-            List<Map<String, Object>> temp = new ArrayList<>();
-            Map<String, Object> one = itemList.get(0);
-            Map<String, Object> copy = new HashMap<>();
-            for (Map.Entry<String, Object> e : one.entrySet()) {
-                copy.put(e.getKey(), "?");
-            }
-            temp.add(copy);
+        if (this.query.isEmpty()) {
+            prepareInsert(itemList.get(0), mappingRule);
+        }
 
-            this.query = documentTemplate.makeHeader(moduleContext, mappingRule, temp);
-            this.param = mappingRule.getParam();
-            logger.debug(this.query);
-            ps = this.connection.prepareStatement(this.query);
+        if (this.isolate) {
+            createIsolated(itemList);
+            executeIsolated();
+            return sent;
         }
 
         try {
             int count = 0;
             int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
+            RecordBatch batch = itemList instanceof RecordBatch ? (RecordBatch) itemList : null;
+            int row = 0;
             for (Map item : itemList) {
-                int i = 1;
-                for (String key : this.param) {
-                    if (key.startsWith(">")) {
-                        Object value = FloodgateFunctionManager.shared().processFunction(moduleContext, key.substring(1));
-                        ps.setObject(i++, value);
-                    } else if (key.startsWith("{")) {
-                        Object value = moduleContext.get(key.substring(1, key.length() - 1));
-                        ps.setObject(i++, value);
-                    } else {
-                        ps.setObject(i++, item.get(key));
-                    }
+                if (batch != null) {
+                    this.bindingPlan.bind(ps, batch, row++, moduleContext);
+                } else {
+                    this.bindingPlan.bind(ps, item, moduleContext);
                 }
 
                 ps.addBatch();
                 count++;
+                if (this.autoTuner != null && this.autoTuner.isSampling(count)) {
+                    sampleRow(batch, row - 1, item);
+                }
                 if (count >= batchSize) {
                     ps.setQueryTimeout(timeout);
+                    long start = System.nanoTime();
                     ps.executeBatch();
+                    tune(count, System.nanoTime() - start);
                     this.sent += count;
                     count = 0;
 
                     this.module.setProgress(this.sent);
                     FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+                    checkpoint();
                 }
             }
             if (count > 0) {
@@ -416,20 +567,303 @@ public class ConnectorDB extends ConnectorBase {
         return sent;
     }
 
+    /*
+        BULKLOAD가 설정되고 rule이 컬럼, 컨텍스트 값, 바인딩 가능한 함수로만 구성된 경우 bulk loader를 사용한다
+        SQL 표현식이 필요한 rule(literal, sysdate 등)이나 지원하지 않는 DBTYPE은 기존 batch 방식을 사용한다
+     */
+    private BulkLoader prepareBulkLoader(MappingRule mappingRule) throws Exception {
+        Boolean bulk = (Boolean) PropertyMap.getDefault(this.module.getSequences(), FlowTag.BULKLOAD, Boolean.valueOf(false));
+        if (!bulk) {
+            return null;
+        }
+        if (this.isolate) {
+            logger.info("Bulk load cannot isolate rejected rows, using batch.");
+            return null;
+        }
+        String staging = null;
+        if (FlowTag.UPSERT.name().equals(PropertyMap.getString(this.module.getSequences(), FlowTag.ACTION))) {
+            // UPSERT는 staging 테이블에만 bulk load할 수 있다
+            staging = getStaging();
+            if (staging == null) {
+                logger.info("Bulk load for UPSERT requires STAGING, using batch.");
+                return null;
+            }
+        }
+
+        String dbType = PropertyMap.getString(this.connectInfo, ConnectorTag.DBTYPE);
+        FunctionProcessor processor = getFunctionProcessor(dbType);
+
+        List<String> columns = new ArrayList<>();
+        List<String> param = new ArrayList<>();
+        for (MappingRuleItem item : mappingRule.getRules()) {
+            if (item.getSourceType() != MappingRuleItem.RuleType.ANY || item.getTargetType() != MappingRuleItem.RuleType.ANY) {
+                logger.info("Typed rule cannot be bulk loaded, using batch : " + item.getTargetName());
+                return null;
+            }
+
+            switch (item.getAction()) {
+                case reference:
+                case system:
+                    param.add(item.getSourceName());
+                    break;
+                case function:
+                    if (!"?".equals(processor.process(item))) {
+                        logger.info("SQL function cannot be bulk loaded, using batch : " + item.getSourceName());
+                        return null;
+                    }
+                    param.add(">" + item.getSourceName());
+                    break;
+                default:
+                    logger.info("Rule " + item.getAction() + " cannot be bulk loaded, using batch : " + item.getTargetName());
+                    return null;
+            }
+            columns.add(item.getTargetName());
+        }
+
+        String table = staging != null ? staging : PropertyMap.getString(this.module.getSequences(), FlowTag.TARGET);
+        BulkLoader loader = BulkLoader.get(dbType, table, columns);
+        if (loader == null) {
+            logger.info("Bulk load is not supported for " + dbType + ", using batch.");
+            return null;
+        }
+        if (staging != null) {
+            prepareStaging(mappingRule);
+        }
+
+        this.bindingPlan = BindingPlan.compile(param, moduleContext);
+        // bulk load은 batch보다 큰 단위가 유리하다
+        this.batchSize = PropertyMap.getIntegerDefault(this.module.getSequences(), FlowTag.BATCHSIZE, 10000);
+        return loader;
+    }
+
+    private void load(List<Map> itemList) throws Exception {
+        if (itemList == null) {
+            return;
+        }
+
+        try {
+            RecordBatch batch = itemList instanceof RecordBatch ? (RecordBatch) itemList : null;
+            int row = 0;
+            for (Map item : itemList) {
+                for (int i = 0; i < this.bindingPlan.size(); i++) {
+                    if (batch != null) {
+                        this.bulkLoader.appendValue(this.bindingPlan.resolve(i, batch, row, moduleContext));
+                    } else {
+                        this.bulkLoader.appendValue(this.bindingPlan.resolve(i, item, moduleContext));
+                    }
+                }
+                this.bulkLoader.endRow();
+                row++;
+
+                if (this.bulkLoader.size() >= this.batchSize) {
+                    flushBulk();
+                }
+            }
+            itemList.clear();
+        } catch (Exception e) {
+            errorPosition = this.sent;
+
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    private void flushBulk() throws Exception {
+        try {
+            int count = this.bulkLoader.flush(this.connection);
+            if (count > 0) {
+                this.sent += count;
+                this.module.setProgress(this.sent);
+                FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+            }
+            checkpoint();
+        } catch (Exception e) {
+            errorPosition = this.sent;
+
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /*
+        생성된 SQL과 파라미터는 StatementCache에서 재사용한다
+        STAGING은 staging 테이블 초기화가 필요하므로 매번 생성한다
+     */
+    private void prepareInsert(Map<String, Object> one, MappingRule mappingRule) throws Exception {
+        DocumentTemplate documentTemplate = getDocumentTemplate();
+
+        String key = null;
+        String name = (String) moduleContext.get(MODULE_CONTEXT.CONNECT_NAME);
+        String pool = ConnectionPoolManager.shared().getKey(name, connectInfo);
+        if (getStaging() == null) {
+            String datasource = pool + "@" + PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE);
+            key = StatementCache.makeKey(datasource, documentTemplate, moduleContext, mappingRule, one.keySet());
+
+            StatementCache.Entry entry = StatementCache.shared().get(key);
+            if (entry != null) {
+                this.query = entry.getQuery();
+                mappingRule.getParam().addAll(entry.getParam());
+            }
+        }
+
+        List<String> param = mappingRule.getParam();
+        if (this.query.isEmpty()) {
+            List<Map<String, Object>> temp = new ArrayList<>();
+            Map<String, Object> copy = new HashMap<>();
+            for (Map.Entry<String, Object> e : one.entrySet()) {
+                copy.put(e.getKey(), "?");
+            }
+            temp.add(copy);
+
+            int start = param.size();
+            this.query = makeQuery(documentTemplate, mappingRule, temp);
+            if (key != null) {
+                StatementCache.shared().put(key, this.query, param.subList(start, param.size()));
+            }
+        }
+
+        logger.debug(this.query);
+        ps = this.connection.prepareStatement(this.query);
+        this.bindingPlan = BindingPlan.compile(param, ps, moduleContext, getParamTypes(pool, mappingRule));
+    }
+
+    // param 항목별 대상 컬럼 타입, 대상 테이블을 조회할 수 없으면 ParameterMetaData를 사용한다
+    private Map<String, Integer> getParamTypes(String pool, MappingRule mappingRule) {
+        String table = PropertyMap.getString(this.module.getSequences(), FlowTag.TARGET);
+        if (table == null || table.isEmpty()) {
+            return null;
+        }
+
+        Map<String, Integer> columnTypes;
+        try {
+            columnTypes = SchemaCache.shared().getColumnTypes(this.connection, pool, table);
+        } catch (SQLException e) {
+            logger.debug("Cannot read column types of " + table + " : " + e.getMessage());
+            return null;
+        }
+
+        Map<String, Integer> paramTypes = new HashMap<>();
+        for (MappingRuleItem item : mappingRule.getRules()) {
+            Integer type = columnTypes.get(item.getTargetName().toUpperCase());
+            if (type == null) {
+                continue;
+            }
+            switch (item.getAction()) {
+                case reference:
+                case system:
+                    paramTypes.putIfAbsent(item.getSourceName(), type);
+                    break;
+                case function:
+                    paramTypes.putIfAbsent(">" + item.getSourceName(), type);
+                    break;
+                default:
+                    break;
+            }
+        }
+        return paramTypes;
+    }
+
+    private String makeQuery(DocumentTemplate documentTemplate, MappingRule mappingRule, List<Map<String, Object>> temp) throws Exception {
+        if (getStaging() == null) {
+            return documentTemplate.makeHeader(moduleContext, mappingRule, temp);
+        }
+
+        prepareStaging(mappingRule);
+        return documentTemplate.makePart("stage", moduleContext, mappingRule, temp);
+    }
+
+    private String getStaging() {
+        if (!FlowTag.UPSERT.name().equals(PropertyMap.getString(this.module.getSequences(), FlowTag.ACTION))) {
+            return null;
+        }
+        String staging = PropertyMap.getString(this.module.getSequences(), FlowTag.STAGING);
+        return staging == null || staging.isEmpty() ? null : staging;
+    }
+
+    /*
+        UPSERT에 STAGING이 설정된 경우 행들은 staging 테이블에 적재하고,
+        commit 전에 template의 merge part로 대상 테이블에 한번에 반영한다
+     */
+    private void prepareStaging(MappingRule mappingRule) throws Exception {
+        DocumentTemplate documentTemplate = getDocumentTemplate();
+        if (!documentTemplate.hasPart("stage") || !documentTemplate.hasPart("merge")) {
+            throw new Exception("Template has no stage or merge part for STAGING.");
+        }
+
+        this.mergeQuery = documentTemplate.makePart("merge", moduleContext, mappingRule, null);
+        logger.debug(this.mergeQuery);
+
+        // 이전에 실패하고 남은 행
+        try (PreparedStatement ps = this.connection.prepareStatement("DELETE FROM " + getStaging())) {
+            ps.execute();
+        }
+    }
+
+    private void mergeStaging() throws Exception {
+        int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
+        try (PreparedStatement ps = this.connection.prepareStatement(this.mergeQuery)) {
+            ps.setQueryTimeout(timeout);
+            int merged = ps.executeUpdate();
+            Object before = this.module.getMetrics().get("MERGED");
+            this.module.putMetric("MERGED", before instanceof Integer ? (Integer) before + merged : merged);
+        }
+        try (PreparedStatement ps = this.connection.prepareStatement("DELETE FROM " + getStaging())) {
+            ps.setQueryTimeout(timeout);
+            ps.execute();
+        }
+    }
+
     @Override
     public void afterCreate(MappingRule rule) throws Exception {
     }
 
+    // source module의 조회 결과를 DB 안에서 바로 적재한다
+    public int insertSelect(MappingRule rule, Module source) throws Exception {
+        List<Object> params = new ArrayList<>();
+        String query = SqlPushdown.makeQuery(source, this.module, rule, this.dialect.getFunctionProcessor(), params);
+        logger.debug(query);
+
+        try (PreparedStatement ps = this.connection.prepareStatement(query)) {
+            BoundSql.bind(ps, 1, params);
+            this.sent = ps.executeUpdate();
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+        this.module.putMetric(FlowTag.PUSHDOWN.name(), Boolean.TRUE);
+        this.module.setProgress(this.sent);
+        FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+        return this.sent;
+    }
+
     @Override
-    public void commit() throws SQLException {
+    public void commit() throws Exception {
+        if (this.asyncBatch != null) {
+            // 실행중인 batch가 끝난 후에 commit
+            updateSent(this.asyncBatch.await());
+        }
+        if (this.mergeQuery != null) {
+            mergeStaging();
+        }
         this.connection.commit();
+
+        this.committed = this.sent;
+        this.lastCommit = System.currentTimeMillis();
+        this.module.putMetric("COMMITTED", getOffset());
     }
 
     @Override
-    public void rollback() throws SQLException {
-        this.sent = 0;
+    public void rollback() throws Exception {
+        if (this.asyncBatch != null) {
+            this.asyncBatch.cancel();
+        }
+        if (this.isolator != null) {
+            this.isolator.clear();
+        }
+        // 중간 commit된 행은 유지된다
+        this.sent = this.committed;
         this.connection.rollback();
-        this.module.setProgress(0);
+        this.module.setProgress(this.sent);
         FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
     }
 
@@ -439,7 +873,62 @@ public class ConnectorDB extends ConnectorBase {
         String sql = PropertyMap.getString(this.module.getSequences(), FlowTag.SQL);
         String condition = PropertyMap.getString(this.module.getSequences(), FlowTag.CONDITION);
 
+        // {CONTEXT.path} 는 바인드 변수로 바꾼다
+        List<Object> params = new ArrayList<>();
+        if (sql != null) {
+            BoundSql bound = BoundSql.parse(sql);
+            sql = bound.getSql();
+            params.addAll(bound.resolve(moduleContext));
+        } else if (condition != null) {
+            BoundSql bound = BoundSql.parse(condition);
+            condition = bound.getSql();
+            params.addAll(bound.resolve(moduleContext));
+        }
+
+        // LIMIT, OFFSET, KEYSET, SAMPLE은 클라이언트에서 자르지 않고 DB에서 처리한다
+        int limit = getPagingValue(FlowTag.LIMIT);
+        int offset = getPagingValue(FlowTag.OFFSET);
+        String orderBy = PropertyMap.getString(this.module.getSequences(), FlowTag.ORDERBY);
+        Map keyset = (Map) PropertyMap.get(this.module.getSequences(), FlowTag.KEYSET);
+        Object sample = PropertyMap.get(this.module.getSequences(), FlowTag.SAMPLE);
+        if ((limit > 0 || offset > 0 || keyset != null || sample != null)
+                && (PropertyMap.get(this.module.getSequences(), FlowTag.PARTITION) != null
+                || PropertyMap.get(this.module.getSequences(), FlowTag.WATERMARK) != null)) {
+            throw new IllegalArgumentException("LIMIT, OFFSET, KEYSET and SAMPLE cannot be used with PARTITION or WATERMARK.");
+        }
+
+        if (keyset != null) {
+            // 이전 페이지의 마지막 값 이후부터 읽는다, AFTER가 없으면 첫 페이지
+            String keyColumn = PropertyMap.getString(keyset, KEYSET.COLUMN);
+            Object after = BoundSql.resolveValue(moduleContext, PropertyMap.get(keyset, KEYSET.AFTER));
+            if (orderBy == null) {
+                orderBy = keyColumn;
+            }
+            if (after != null) {
+                if (sql != null) {
+                    sql = "SELECT * FROM (" + sql + ") K WHERE " + keyColumn + " > ?";
+                } else if (condition != null && !condition.isEmpty()) {
+                    condition = "(" + condition + ") AND " + keyColumn + " > ?";
+                } else {
+                    condition = keyColumn + " > ?";
+                }
+                params.add(after);
+            }
+        }
+
+        String from = table;
+        if (sample != null) {
+            if (sql != null) {
+                throw new IllegalArgumentException("SAMPLE cannot be used with SQL.");
+            }
+            from = this.dialect.sample(table, Double.parseDouble(String.valueOf(sample)));
+            if (from == null) {
+                throw new IllegalArgumentException("SAMPLE is not supported for " + PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE));
+            }
+        }
+
         String query = "";
+        String columns = "";
 
         if( sql != null ) {
             query = sql;
@@ -479,57 +968,159 @@ public class ConnectorDB extends ConnectorBase {
             int i = 0;
             if (sourceSet.isEmpty()) {
                 // when column for selection is not exist
-                query += " * ";
+                columns = " * ";
             } else {
                 for (String source : sourceSet) {
                     if (i > 0) {
-                        query += ", ";
+                        columns += ", ";
                     }
-                    query += source;
+                    columns += source;
                     i++;
                 }
             }
 
-            query += " FROM " + table;
+            query += columns + " FROM " + from;
             if (condition != null && !condition.isEmpty()) {
                 query += " WHERE " + condition;
             }
-            logger.debug(query);
         }
 
+        Map watermarkInfo = (Map) PropertyMap.get(this.module.getSequences(), FlowTag.WATERMARK);
+        if (watermarkInfo != null) {
+            if (PropertyMap.get(this.module.getSequences(), FlowTag.PARTITION) != null) {
+                throw new IllegalArgumentException("WATERMARK cannot be used with PARTITION.");
+            }
+            String key = this.module.getFlow().getTargetId() + "." + this.module.getName();
+            this.watermark = new Watermark(watermarkInfo, key);
+            if (sql != null) {
+                this.watermark.prepare(this.connection, "(" + sql + ") W", null, params);
+                query = "SELECT * FROM (" + sql + ") W WHERE " + this.watermark.getCondition();
+            } else {
+                this.watermark.prepare(this.connection, table, condition, params);
+                query = "SELECT " + columns + " FROM " + table + " WHERE ";
+                if (condition != null && !condition.isEmpty()) {
+                    query += "(" + condition + ") AND ";
+                }
+                query += this.watermark.getCondition();
+            }
+            // flow가 성공하면 저장된다
+            this.module.getFlowContext().addWatermark(this.watermark);
+        }
+        if (limit > 0 || offset > 0 || (orderBy != null && !orderBy.isEmpty())) {
+            query = this.dialect.paginate(query, orderBy, offset, limit);
+        }
+        logger.debug(query);
+
         this.fetchSize = PropertyMap.getIntegerDefault(this.module.getSequences(), FlowTag.FETCHSIZE, 0);
+        this.lobThreshold = PropertyMap.getIntegerDefault(this.module.getSequences(), FlowTag.LOBTHRESHOLD, 1024 * 1024);
+        if (this.module.isMaterializeLob()) {
+            // LobHandle은 다음 buffer를 읽기 전까지만 유효하다
+            this.lobThreshold = -1;
+        }
+        Boolean autoTune = (Boolean) PropertyMap.getDefault(this.module.getSequences(), FlowTag.AUTOTUNE, Boolean.valueOf(false));
+        // 측정 전에는 컬럼 정의로 추정한다
+        boolean tuneFetch = autoTune && PropertyMap.getInteger(this.module.getSequences(), FlowTag.FETCHSIZE) == null;
+        if (tuneFetch) {
+            this.ps = this.connection.prepareStatement(query);
+            ResultSetMetaData rsmeta = this.ps.getMetaData();
+            this.fetchSize = rsmeta != null ? AutoTuner.getFetchSize(AutoTuner.estimateRowBytes(rsmeta)) : AutoTuner.MIN_FETCH * 10;
+            this.module.putMetric(FlowTag.FETCHSIZE.name(), this.fetchSize);
+        } else {
+            this.fetchTuned = true;
+        }
         this.sizeForUpdateHandler = fetchSize < 1000 ? 3000 : fetchSize * 3;
         this.flush = (Boolean) PropertyMap.getDefault(this.module.getSequences(), FlowTag.FLUSH, Boolean.valueOf(false));
 
-        this.ps = this.connection.prepareStatement(query);
+        Map partition = (Map) PropertyMap.get(this.module.getSequences(), FlowTag.PARTITION);
+        if (partition != null) {
+            Integer bufferSize = PropertyMap.getInteger(this.module.getSequences(), FlowTag.BUFFERSIZE);
+            int batchRows = bufferSize != null ? bufferSize : Math.max(fetchSize, 1000);
+
+            String name = (String) moduleContext.get(MODULE_CONTEXT.CONNECT_NAME);
+            this.partitionedReader = new PartitionedReader(this.connection, name, this.connectInfo, partition);
+            this.partitionedReader.start(columns, table, condition, sql, params, this.dialect.getFetchSize(fetchSize, connectInfo), batchRows);
+            return;
+        }
+
+        if (this.ps == null) {
+            this.ps = this.connection.prepareStatement(query);
+        }
+        if (limit > 0) {
+            // 문법을 지원하지 않는 드라이버에서도 더 읽지 않도록 한다
+            this.ps.setMaxRows(limit);
+        }
+        // 드라이버가 결과 전체를 메모리에 올리지 않도록 DBTYPE별로 설정한다
+        int streamFetchSize = this.dialect.getFetchSize(fetchSize, connectInfo);
+        if (streamFetchSize != 0) {
+            this.ps.setFetchSize(streamFetchSize);
+        }
+        int index = BoundSql.bind(this.ps, 1, params);
+        if (this.watermark != null) {
+            this.watermark.bind(this.ps, index);
+        }
         this.resultSet = ps.executeQuery();
 
-        if (fetchSize > 0) {
-            this.resultSet.setFetchSize(fetchSize);
+        if (streamFetchSize > 0) {
+            this.resultSet.setFetchSize(streamFetchSize);
+        }
+    }
+
+    // LIMIT, OFFSET : 숫자 또는 {CONTEXT.path}, 없으면 0
+    private int getPagingValue(FlowTag tag) {
+        Object value = BoundSql.resolveValue(moduleContext, PropertyMap.get(this.module.getSequences(), tag));
+        if (value == null || String.valueOf(value).isEmpty()) {
+            return 0;
+        }
+        return Integer.parseInt(String.valueOf(value).trim());
+    }
+
+    // AUTOTUNE : 처음 읽은 행들의 실제 크기로 fetch 크기를 다시 정한다
+    private void tuneFetchSize(List buffer) throws SQLException {
+        if (this.fetchTuned || buffer.isEmpty()) {
+            return;
+        }
+        this.fetchTuned = true;
+
+        AutoTuner tuner = new AutoTuner(AutoTuner.MIN_BATCH);
+        int rows = Math.min(buffer.size(), 100);
+        for (int r = 0; r < rows; r++) {
+            long bytes = 0;
+            for (Object value : ((Map) buffer.get(r)).values()) {
+                bytes += AutoTuner.estimate(value);
+            }
+            tuner.addSample(bytes);
+        }
+
+        this.fetchSize = AutoTuner.getFetchSize(tuner.getAverageRowBytes());
+        this.module.putMetric(FlowTag.FETCHSIZE.name(), this.fetchSize);
+        int streamFetchSize = this.dialect.getFetchSize(this.fetchSize, connectInfo);
+        if (this.resultSet != null && streamFetchSize > 0) {
+            this.resultSet.setFetchSize(streamFetchSize);
         }
     }
 
     @Override
     public int readBuffer(MappingRule rule, List buffer, int limit) throws Exception {
-        ResultSetMetaData rsmeta = this.resultSet.getMetaData();
+        if (this.partitionedReader != null) {
+            return readPartition(buffer);
+        }
+
+        RecordBatch batch = null;
+        if (buffer instanceof RecordBatch) {
+            batch = (RecordBatch) buffer;
+            if (batch.isEmpty()) {
+                batch.setSchema(getReadSchema());
+            }
+        }
 
-        int count = rsmeta.getColumnCount();
         int c = 0;
         while (this.resultSet.next()) {
             if (!this.flush) {
-                Map<String, Object> column = new LinkedHashMap<>();
-                for (int i = 1; i <= count; i++) {
-                    Object row = this.resultSet.getObject(i);
-
-                    if (row instanceof oracle.sql.TIMESTAMP) {
-                        // Jackson cannot (de)serialize oracle.sql.TIMESTAMP, converting it to java.sql.Timestamp
-                        row = ((oracle.sql.TIMESTAMP)row).timestampValue();
-                    }
-                    // TODO process Clob and skip Blob
-                    column.put(rsmeta.getColumnLabel(i), row);
+                if (batch != null) {
+                    fetchRow(this.resultSet, batch, this.lobThreshold);
+                } else {
+                    buffer.add(fetchRow());
                 }
-
-                buffer.add(column);
             }
 
             c++;
@@ -551,33 +1142,63 @@ public class ConnectorDB extends ConnectorBase {
             FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, this.channelContext, this.module);
         }
 
+        tuneFetchSize(buffer);
+
         return buffer.size();
     }
 
+    /*
+        FORMAT이 있는 FILE, FTP, SFTP로 행을 Map으로 만들지 않고 바로 인코딩하여 쓴다
+        출력 채널은 컬럼 타입을 확인한 후에 연다
+     */
+    int export(RowEncoder encoder, List<String> sources, List<String> names, StreamConnector target, Charset charset) throws Exception {
+        if (this.resultSet == null || !encoder.compile(this.resultSet.getMetaData(), sources, names)) {
+            return -1;
+        }
+        OutputStream out = target.getOutputStream();
+
+        ByteSink sink = new ByteSink(EXPORT_BUFFER, charset);
+        encoder.writeHeader(sink);
+
+        int c = 0;
+        while (this.resultSet.next()) {
+            encoder.encode(this.resultSet, sink);
+            if (sink.size() >= EXPORT_BUFFER) {
+                sink.writeTo(out);
+                sink.reset();
+            }
+
+            c++;
+            this.updateCount++;
+            if (this.updateCount > this.sizeForUpdateHandler) {
+                this.updateCount = 0;
+                this.module.setProgress(this.retrieve + c);
+                FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, this.channelContext, this.module);
+            }
+        }
+        sink.writeTo(out);
+        out.flush();
+
+        this.retrieve += c;
+        this.module.setProgress(this.retrieve);
+        FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, this.channelContext, this.module);
+        return c;
+    }
+
     @Override
     public List<Map> readPartially(MappingRule rule) throws Exception {
-        List<Map> result = new ArrayList<>();
-
-        ResultSetMetaData rsmeta = this.resultSet.getMetaData();
+        if (this.partitionedReader != null) {
+            List<Map> result = new ArrayList<>();
+            readPartition(result);
+            return result;
+        }
 
+        RecordBatch result = new RecordBatch(getReadSchema());
 
-        int count = rsmeta.getColumnCount();
         int c = 0;
         while (this.resultSet.next()) {
             if (!this.flush) {
-                Map<String, Object> column = new LinkedHashMap<>();
-                for (int i = 1; i <= count; i++) {
-                    Object row = this.resultSet.getObject(i);
-
-                    if (row instanceof oracle.sql.TIMESTAMP) {
-                        // Jackson cannot (de)serialize oracle.sql.TIMESTAMP, converting it to java.sql.Timestamp
-                        row = ((oracle.sql.TIMESTAMP)row).timestampValue();
-                    }
-                    // TODO process Clob and skip Blob
-                    column.put(rsmeta.getColumnLabel(i), row);
-                }
-
-                result.add(column);
+                fetchRow(this.resultSet, result, this.lobThreshold);
             }
 
             c++;
@@ -598,32 +1219,53 @@ public class ConnectorDB extends ConnectorBase {
         return result;
     }
 
+    // 파티션 reader들이 읽은 batch 하나를 buffer에 추가한다
+    private int readPartition(List buffer) throws Exception {
+        int before = buffer.size();
+
+        RecordBatch part = this.partitionedReader.next();
+        while (part != null && this.flush) {
+            this.retrieve += part.size();
+            part = this.partitionedReader.next();
+        }
+
+        if (part != null) {
+            if (buffer instanceof RecordBatch) {
+                ((RecordBatch) buffer).appendFrom(part);
+            } else {
+                buffer.addAll(part);
+            }
+            this.retrieve += part.size();
+        }
+
+        this.module.setProgress(this.retrieve);
+        FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, this.channelContext, this.module);
+
+        return buffer.size() - before;
+    }
+
     @Override
     public void afterRead() throws Exception {
     }
 
     @Override
     public List<Map> read(MappingRule rule) throws Exception {
-        List<Map> result = new ArrayList<>();
-        ResultSetMetaData rsmeta = this.resultSet.getMetaData();
+        if (this.partitionedReader != null) {
+            RecordBatch result = new RecordBatch();
+            int part;
+            do {
+                part = readPartition(result);
+            } while (part > 0);
+            return result;
+        }
+
+        RecordBatch result = new RecordBatch(getReadSchema());
 
-        int count = rsmeta.getColumnCount();
         int c = 0;
         while (this.resultSet.next()) {
             if (!this.flush) {
-                Map<String, Object> column = new LinkedHashMap<>();
-                for (int i = 1; i <= count; i++) {
-                    Object row = this.resultSet.getObject(i);
-
-                    if (row instanceof oracle.sql.TIMESTAMP) {
-                        // Jackson cannot (de)serialize oracle.sql.TIMESTAMP, converting it to java.sql.Timestamp
-                        row = ((oracle.sql.TIMESTAMP)row).timestampValue();
-                    }
-                    // TODO process Clob and skip Blob
-                    column.put(rsmeta.getColumnLabel(i), row);
-                }
-
-                result.add(column);
+                // 결과가 connector를 닫은 후에 사용되므로 LOB은 읽어둔다
+                fetchRow(this.resultSet, result, -1);
             }
 
             c++;
@@ -643,13 +1285,118 @@ public class ConnectorDB extends ConnectorBase {
         return result;
     }
 
+    // ResultSet의 컬럼 구성은 변하지 않으므로 한번만 만든다
+    private RecordSchema getReadSchema() throws SQLException {
+        if (this.readSchema == null) {
+            this.readSchema = makeSchema(this.resultSet.getMetaData());
+        }
+        return this.readSchema;
+    }
+
+    static RecordSchema makeSchema(ResultSetMetaData rsmeta) throws SQLException {
+        int count = rsmeta.getColumnCount();
+
+        String[] names = new String[count];
+        ColumnType[] types = new ColumnType[count];
+        for (int i = 1; i <= count; i++) {
+            names[i - 1] = rsmeta.getColumnLabel(i);
+            types[i - 1] = getColumnType(rsmeta, i);
+        }
+        return new RecordSchema(names, types);
+    }
+
+    private static ColumnType getColumnType(ResultSetMetaData rsmeta, int column) throws SQLException {
+        switch (rsmeta.getColumnType(column)) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+                return ColumnType.LONG;
+            case Types.BIGINT:
+                // unsigned bigint can overflow
+                return rsmeta.isSigned(column) ? ColumnType.LONG : ColumnType.OBJECT;
+            case Types.DOUBLE:
+                return ColumnType.DOUBLE;
+            case Types.DATE:
+                return ColumnType.DATE;
+            case Types.TIMESTAMP:
+                return ColumnType.TIMESTAMP;
+            default:
+                return ColumnType.OBJECT;
+        }
+    }
+
+    static void fetchRow(ResultSet resultSet, RecordBatch batch, long lobThreshold) throws SQLException {
+        RecordSchema schema = batch.getSchema();
+        int row = batch.newRow();
+        for (int c = 0; c < schema.size(); c++) {
+            int i = c + 1;
+            switch (schema.getType(c)) {
+                case LONG:
+                {
+                    long value = resultSet.getLong(i);
+                    if (!resultSet.wasNull()) {
+                        batch.setLong(row, c, value);
+                    }
+                    break;
+                }
+                case DOUBLE:
+                {
+                    double value = resultSet.getDouble(i);
+                    if (!resultSet.wasNull()) {
+                        batch.setDouble(row, c, value);
+                    }
+                    break;
+                }
+                case DATE:
+                {
+                    Date value = resultSet.getDate(i);
+                    if (value != null) {
+                        batch.setTime(row, c, value.getTime(), 0);
+                    }
+                    break;
+                }
+                case TIMESTAMP:
+                {
+                    Timestamp value = resultSet.getTimestamp(i);
+                    if (value != null) {
+                        batch.setTime(row, c, value.getTime(), value.getNanos());
+                    }
+                    break;
+                }
+                default:
+                    batch.setObject(row, c, getObject(resultSet, i, lobThreshold));
+                    break;
+            }
+        }
+    }
+
+    private Map<String, Object> fetchRow() throws SQLException {
+        RecordSchema schema = getReadSchema();
+        Map<String, Object> column = new LinkedHashMap<>();
+        for (int c = 0; c < schema.size(); c++) {
+            column.put(schema.getName(c), getObject(this.resultSet, c + 1, this.lobThreshold));
+        }
+        return column;
+    }
+
+    private static Object getObject(ResultSet resultSet, int column, long lobThreshold) throws SQLException {
+        Object value = resultSet.getObject(column);
+
+        if (value instanceof oracle.sql.TIMESTAMP) {
+            // Jackson cannot (de)serialize oracle.sql.TIMESTAMP, converting it to java.sql.Timestamp
+            value = ((oracle.sql.TIMESTAMP) value).timestampValue();
+        } else if (value instanceof Clob || value instanceof Blob) {
+            value = LobHandle.of(value, lobThreshold);
+        }
+        return value;
+    }
+
     @Override
     public void check() throws Exception {
         String table = PropertyMap.getString(this.module.getSequences(), FlowTag.TARGET);
 
-        DatabaseMetaData databaseMetaData = this.connection.getMetaData();
-        ResultSet resultSet = databaseMetaData.getTables(null, null, table, new String[] {"TABLE"});
-        boolean exist = resultSet.next();
+        String name = (String) moduleContext.get(MODULE_CONTEXT.CONNECT_NAME);
+        boolean exist = SchemaCache.shared().exists(this.connection, ConnectionPoolManager.shared().getKey(name, connectInfo), table);
 
         if (!exist) {
             throw new Exception(table + " is not exist.");
@@ -663,24 +1410,40 @@ public class ConnectorDB extends ConnectorBase {
         String condition = PropertyMap.getString(this.module.getSequences(), FlowTag.CONDITION);
 
         String query = "";
+        BoundSql bound;
 
         if (sql != null) {
-            query = sql;
+            bound = BoundSql.parse(sql);
+            query = bound.getSql();
         } else {
+            bound = BoundSql.parse(condition);
             query = "SELECT COUNT(*) AS COUNT ";
             query += " FROM " + table;
             if (condition != null && !condition.isEmpty()) {
-                query += " WHERE " + condition;
+                query += " WHERE " + bound.getSql();
             }
             logger.debug(query);
         }
 
+        // SQL은 COUNT 조회 자체이므로 추정하지 않는다
+        ESTIMATE estimate = sql == null ? getEstimate() : ESTIMATE.OFF;
+        if (estimate != ESTIMATE.OFF) {
+            Long rows = estimateCount(table, condition, bound);
+            if (rows != null) {
+                setCount(rows);
+                return;
+            }
+            if (estimate == ESTIMATE.ON) {
+                logger.info("Estimated count of " + table + " is not available.");
+                return;
+            }
+        }
+
         try (PreparedStatement ps = this.connection.prepareStatement(query)) {
+            BoundSql.bind(ps, 1, bound.resolve(moduleContext));
             ResultSet rs = ps.executeQuery();
             if (rs.next()) {
-                int count = rs.getInt("COUNT");
-                this.module.setProgress(count);
-                FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+                setCount(rs.getLong("COUNT"));
             }
         } catch (Exception e) {
             e.printStackTrace();
@@ -688,6 +1451,80 @@ public class ConnectorDB extends ConnectorBase {
         }
     }
 
+    private ESTIMATE getEstimate() {
+        Object value = PropertyMap.get(this.module.getSequences(), FlowTag.ESTIMATE);
+        if (value == null) {
+            return ESTIMATE.OFF;
+        }
+        if (value instanceof Boolean) {
+            return (Boolean) value ? ESTIMATE.ON : ESTIMATE.OFF;
+        }
+        String name = String.valueOf(value).trim().toUpperCase();
+        if ("TRUE".equals(name)) {
+            return ESTIMATE.ON;
+        } else if ("FALSE".equals(name)) {
+            return ESTIMATE.OFF;
+        }
+        return ESTIMATE.valueOf(name);
+    }
+
+    /*
+        조건이 없으면 통계 정보의 행 수, 조건이 있으면 실행 계획의 예상 행 수
+        통계가 없는 테이블도 실행 계획으로 추정해 본다
+     */
+    /*
+        추정에 실패하면 savepoint까지만 되돌린다
+        PostgreSQL 등은 오류 후 트랜잭션을 되돌려야 COUNT(*)를 실행할 수 있으며, 이 connection의 다른 작업은 유지한다
+     */
+    private Long estimateCount(String table, String condition, BoundSql bound) throws SQLException {
+        Savepoint savepoint = null;
+        if (!this.connection.getAutoCommit()) {
+            try {
+                savepoint = this.connection.setSavepoint();
+            } catch (SQLException e) {
+                logger.debug("Cannot set savepoint for estimated count : " + e.getMessage());
+            }
+        }
+        try {
+            Long rows = null;
+            if (condition == null || condition.isEmpty()) {
+                rows = this.dialect.estimateRows(this.connection, table);
+            }
+            if (rows == null) {
+                String query = "SELECT * FROM " + table;
+                if (condition != null && !condition.isEmpty()) {
+                    query += " WHERE " + bound.getSql();
+                }
+                rows = this.dialect.explainRows(this.connection, query, bound.resolve(moduleContext));
+            }
+            releaseSavepoint(savepoint);
+            return rows;
+        } catch (SQLException e) {
+            logger.info("Cannot estimate count of " + table + " : " + e.getMessage());
+            if (savepoint != null) {
+                this.connection.rollback(savepoint);
+            }
+            return null;
+        }
+    }
+
+    // Oracle은 release를 지원하지 않으며, savepoint는 트랜잭션이 끝날 때 해제된다
+    private void releaseSavepoint(Savepoint savepoint) {
+        if (savepoint == null) {
+            return;
+        }
+        try {
+            this.connection.releaseSavepoint(savepoint);
+        } catch (SQLException e) {
+            logger.debug("Cannot release savepoint : " + e.getMessage());
+        }
+    }
+
+    private void setCount(long count) throws Exception {
+        this.module.setProgress((int) Math.min(count, Integer.MAX_VALUE));
+        FloodgateHandlerManager.shared().handle(Step.MODULE_PROGRESS, channelContext, this.module);
+    }
+
     /*
     @Override
     public List<Map> read(Map rule) throws Exception {
@@ -734,6 +1571,18 @@ public class ConnectorDB extends ConnectorBase {
     }
     */
 
+    // 다른 connection의 lock을 기다리고 있는 문장을 다른 thread에서 취소한다
+    public void cancel() {
+        PreparedStatement ps = this.ps;
+        if (ps != null) {
+            try {
+                ps.cancel();
+            } catch (Exception e) {
+                logger.warn("Cannot cancel the statement of " + this.module.getName() + " : " + e.getMessage());
+            }
+        }
+    }
+
     @Override
     public int update(MappingRule mappingRule, Object data) {
         return 0;
@@ -758,9 +1607,21 @@ public class ConnectorDB extends ConnectorBase {
 
     @Override
     public void close() throws Exception {
-        try { if (this.connection != null) this.connection.close(); } finally { this.connection = null; }
-        try { if (this.ps != null) this.ps.close(); } finally { this.ps = null; }
+        if (this.asyncBatch != null) {
+            this.asyncBatch.close();
+            this.asyncBatch = null;
+        }
+        if (this.isolator != null) {
+            try { this.isolator.close(); } finally { this.isolator = null; }
+        }
+        if (this.partitionedReader != null) {
+            this.partitionedReader.close();
+            this.partitionedReader = null;
+        }
         try { if (this.resultSet != null) this.resultSet.close(); } finally { this.resultSet = null; }
+        try { if (this.ps != null) this.ps.close(); } finally { this.ps = null; }
+        // pooled connection is returned to the pool
+        try { if (this.connection != null) this.connection.close(); } finally { this.connection = null; }
     }
 
     @Override
@@ -40,6 +40,7 @@ import com.flatide.floodgate.system.utils.PropertyMap;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Date;
 import java.util.*;
 
@@ -49,7 +50,7 @@ import org.apache.commons.net.ftp.FTPReply;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-public class ConnectorFTP extends ConnectorBase {
+public class ConnectorFTP extends ConnectorBase implements StreamConnector {
     Logger logger = LogManager.getLogger(ConnectorFTP.class);
     Module module = null;
 
@@ -181,6 +182,9 @@ public class ConnectorFTP extends ConnectorBase {
 
     @Override
     public int createPartially(List<Map> items, MappingRule mappingRule) throws Exception {
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
         ModuleContext context = this.module.getContext();
         String body = getDocumentTemplate().makeBody(context, mappingRule, items, sent);
 
@@ -196,8 +200,36 @@ public class ConnectorFTP extends ConnectorBase {
         return (int) size;
     }
 
+    // 하나의 data connection으로 계속 추가한다
+    @Override
+    public OutputStream getOutputStream() throws Exception {
+        if (this.outputStream == null) {
+            OutputStream output = this.ftp.appendFileStream(remoteFile);
+            if (output == null) {
+                throw new Exception("Error while opening " + remoteFile + " on FTP server : " + this.ftp.getReplyString());
+            }
+            this.outputStream = new BufferedOutputStream(output);
+        }
+        return this.outputStream;
+    }
+
+    private void closeOutputStream() throws Exception {
+        if (this.outputStream != null) {
+            try {
+                this.outputStream.close();
+            } finally {
+                this.outputStream = null;
+            }
+            if (!this.ftp.completePendingCommand()) {
+                throw new Exception("Error while appending to " + remoteFile + " on FTP server : " + this.ftp.getReplyString());
+            }
+        }
+    }
+
     @Override
     public void afterCreate(MappingRule mappingRule) throws Exception {
+        closeOutputStream();
+
         ModuleContext context = this.module.getContext();
         String footer = getDocumentTemplate().makeFooter(context, mappingRule, null);
         if (!footer.isEmpty()) {
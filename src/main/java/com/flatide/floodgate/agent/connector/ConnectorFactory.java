@@ -24,6 +24,8 @@
 
 package com.flatide.floodgate.agent.connector;
 
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
+
 import java.util.Map;
 
 public class ConnectorFactory {
@@ -46,7 +48,7 @@ public class ConnectorFactory {
         switch( method ) {
             case "JDBC":
                 String dbType = (String) info.get(ConnectorTag.DBTYPE.name());
-                loadDriver(dbType);
+                Dialect.get(dbType).loadDriver();
                 con = new ConnectorDB();
                 break;
             case "FILE":
@@ -64,39 +66,4 @@ public class ConnectorFactory {
 
         return con;
     }
-
-    private void loadDriver(String dbType) throws Exception {
-        switch(dbType.trim().toLowerCase()) {
-            case "oracle":
-                Class.forName("oracle.jdbc.driver.OracleDriver");
-                break;
-            case "mysql":
-                Class.forName("com.mysql.cj.jdbc.Driver");
-                break;
-            case "mysql_old":
-                Class.forName("com.mysql.jdbc.Driver");
-                break;
-            case "mariadb":
-                Class.forName("com.mysql.jdbc.Driver");
-                break;
-            case "postgresql":
-                Class.forName("org.postgresql.Driver");
-                break;
-            case "greenplum":
-                Class.forName("org.postgresql.Driver");
-                break;
-            case "mssql":
-                Class.forName("com.microsoft.sqlserver.jdbc.SQLServerDriver");
-                break;
-            case "db2":
-                Class.forName("com.ibm.db2.jcc.DB2Driver");
-                break;
-            case "tibero":
-                Class.forName("com.tmax.tibero.jdbc.TbDriver");
-                break;
-            default:
-                break;
-        }
-    }
-
 }
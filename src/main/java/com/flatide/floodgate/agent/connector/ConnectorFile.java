@@ -38,10 +38,11 @@ import com.flatide.floodgate.system.utils.PropertyMap;
 import java.io.BufferedOutputStream;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.OutputStream;
 import java.sql.Date;
 import java.util.*;
 
-public class ConnectorFile extends ConnectorBase {
+public class ConnectorFile extends ConnectorBase implements StreamConnector {
     // NOTE spring boot의 logback을 사용하려면 LogFactory를 사용해야 하나, 이 경우 log4j 1.x와 충돌함(SoapUI가 사용)
     //Logger logger = LogManager.getLogger(FileConnector.class);
     Module module = null;
@@ -111,7 +112,15 @@ public class ConnectorFile extends ConnectorBase {
 
     @Override
     public int createPartially(List<Map> items, MappingRule mappingRule) throws Exception {
-        return 0;
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
+        return create(items, mappingRule);
+    }
+
+    @Override
+    public OutputStream getOutputStream() throws Exception {
+        return this.outputStream;
     }
 
     public int creatingBinary(byte[] item, long size, long sent) throws Exception {
@@ -44,13 +44,14 @@ import com.jcraft.jsch.Session;
 import java.io.BufferedOutputStream;
 import java.io.ByteArrayInputStream;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.sql.Date;
 import java.util.*;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-public class ConnectorSFTP extends ConnectorBase {
+public class ConnectorSFTP extends ConnectorBase implements StreamConnector {
     Logger logger = LogManager.getLogger(ConnectorSFTP.class);
     Module module = null;
 
@@ -162,6 +163,9 @@ public class ConnectorSFTP extends ConnectorBase {
 
     @Override
     public int createPartially(List<Map> items, MappingRule mappingRule) throws Exception {
+        if (items == null || items.isEmpty()) {
+            return 0;
+        }
         ModuleContext context = this.module.getContext();
         String body = getDocumentTemplate().makeBody(context, mappingRule, items, sent);
 
@@ -177,8 +181,24 @@ public class ConnectorSFTP extends ConnectorBase {
         return (int) size;
     }
 
+    @Override
+    public OutputStream getOutputStream() throws Exception {
+        if (this.outputStream == null) {
+            this.outputStream = new BufferedOutputStream(this.sftp.put(remoteFile, ChannelSftp.APPEND));
+        }
+        return this.outputStream;
+    }
+
     @Override
     public void afterCreate(MappingRule mappingRule) throws Exception {
+        if (this.outputStream != null) {
+            try {
+                this.outputStream.close();
+            } finally {
+                this.outputStream = null;
+            }
+        }
+
         ModuleContext context = this.module.getContext();
         String footer = getDocumentTemplate().makeFooter(context, mappingRule, null);
         if (!footer.isEmpty()) {
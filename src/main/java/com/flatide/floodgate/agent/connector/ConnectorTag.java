@@ -33,6 +33,18 @@ public enum ConnectorTag {
 
     DBTYPE,
 
+    // for jdbc connection pool
+    POOL,
+    MINPOOLSIZE,
+    MAXPOOLSIZE,
+    IDLETIMEOUT,
+    STMTCACHESIZE,
+
+    // session
+    ISOLATION,
+    INITSQL,
+    NLS,
+
     // for ftp
     PASSIVE,
     CODE,
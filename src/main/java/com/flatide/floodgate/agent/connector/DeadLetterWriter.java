@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/*
+    ERRORMODE가 ISOLATE인 경우 적재하지 못한 행을 기록한다
+
+    DEADLETTER : {
+        FILE    : JSON lines 파일 경로
+        TABLE   : FLOW_ID, MODULE, ROW_DATA, ERROR_MSG, CREATED 컬럼을 가진 테이블 (대상 DB)
+    }
+    설정이 없으면 로그로만 남긴다
+ */
+public abstract class DeadLetterWriter {
+    private static final Logger logger = LogManager.getLogger(DeadLetterWriter.class);
+
+    public enum DEADLETTER {
+        FILE,
+        TABLE
+    }
+
+    protected static final ObjectMapper mapper = new ObjectMapper();
+
+    protected final String flowId;
+    protected final String moduleName;
+
+    protected DeadLetterWriter(String flowId, String moduleName) {
+        this.flowId = flowId;
+        this.moduleName = moduleName;
+    }
+
+    public static DeadLetterWriter get(Map deadLetter, Connection connection, String flowId, String moduleName) throws Exception {
+        String table = deadLetter == null ? null : PropertyMap.getString(deadLetter, DEADLETTER.TABLE);
+        String file = deadLetter == null ? null : PropertyMap.getString(deadLetter, DEADLETTER.FILE);
+
+        if (table != null && !table.isEmpty()) {
+            return new DeadLetterTable(connection, table, flowId, moduleName);
+        }
+        if (file != null && !file.isEmpty()) {
+            return new DeadLetterFile(Paths.get(file), flowId, moduleName);
+        }
+        return new DeadLetterLog(flowId, moduleName);
+    }
+
+    public abstract void write(Map<String, Object> row, String error) throws Exception;
+
+    public void flush() throws Exception {
+    }
+
+    public void close() throws Exception {
+    }
+
+    static class DeadLetterLog extends DeadLetterWriter {
+        DeadLetterLog(String flowId, String moduleName) {
+            super(flowId, moduleName);
+        }
+
+        @Override
+        public void write(Map<String, Object> row, String error) throws Exception {
+            logger.warn(String.format("Rejected row of %s (%s) : %s : %s", this.flowId, this.moduleName, error, mapper.writeValueAsString(row)));
+        }
+    }
+
+    static class DeadLetterFile extends DeadLetterWriter {
+        private final BufferedWriter writer;
+
+        DeadLetterFile(Path path, String flowId, String moduleName) throws IOException {
+            super(flowId, moduleName);
+
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            this.writer = Files.newBufferedWriter(path, StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+
+        @Override
+        public void write(Map<String, Object> row, String error) throws Exception {
+            Map<String, Object> line = new LinkedHashMap<>();
+            line.put("FLOW_ID", this.flowId);
+            line.put("MODULE", this.moduleName);
+            line.put("ROW_DATA", row);
+            line.put("ERROR_MSG", error);
+            line.put("CREATED", new Timestamp(System.currentTimeMillis()).toString());
+
+            this.writer.write(mapper.writeValueAsString(line));
+            this.writer.newLine();
+        }
+
+        @Override
+        public void flush() throws Exception {
+            this.writer.flush();
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.writer.close();
+        }
+    }
+
+    // 대상 커넥션의 트랜잭션 안에서 기록되므로 적재된 데이터와 함께 commit된다
+    static class DeadLetterTable extends DeadLetterWriter {
+        private final PreparedStatement ps;
+
+        DeadLetterTable(Connection connection, String table, String flowId, String moduleName) throws Exception {
+            super(flowId, moduleName);
+
+            this.ps = connection.prepareStatement("INSERT INTO " + table
+                    + " (FLOW_ID, MODULE, ROW_DATA, ERROR_MSG, CREATED) VALUES (?, ?, ?, ?, ?)");
+        }
+
+        @Override
+        public void write(Map<String, Object> row, String error) throws Exception {
+            this.ps.setString(1, this.flowId);
+            this.ps.setString(2, this.moduleName);
+            this.ps.setString(3, mapper.writeValueAsString(row));
+            this.ps.setString(4, error);
+            this.ps.setTimestamp(5, new Timestamp(System.currentTimeMillis()));
+            this.ps.executeUpdate();
+        }
+
+        @Override
+        public void close() throws Exception {
+            this.ps.close();
+        }
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.flow.FlowContext;
+import com.flatide.floodgate.agent.flow.FlowTag;
+import com.flatide.floodgate.agent.flow.module.Module;
+import com.flatide.floodgate.agent.flow.rule.MappingRule;
+import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
+import com.flatide.floodgate.agent.flow.stream.RowEncoder;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/*
+    JDBC READ -> FILE, FTP, SFTP CREATE PIPE에서 CREATE module에 FORMAT이 있으면
+    template의 body 대신 ResultSet의 행을 RowEncoder로 출력 채널에 바로 쓴다
+    template의 header, footer는 그대로 사용된다
+
+    RULE은 컬럼 참조(reference)만 사용할 수 있다
+ */
+public class DirectExport {
+    private static final List<String> TARGETS = Arrays.asList("FILE", "FTP", "SFTP");
+
+    public static boolean isApplicable(Module source, Module target, FlowContext flowContext) throws Exception {
+        Map<String, Object> sourceSeq = source.getSequences();
+        Map<String, Object> targetSeq = target.getSequences();
+        if (sourceSeq == null || targetSeq == null) {
+            return false;
+        }
+        if (!FlowTag.READ.name().equals(PropertyMap.getString(sourceSeq, FlowTag.ACTION))
+                || !FlowTag.CREATE.name().equals(PropertyMap.getString(targetSeq, FlowTag.ACTION))) {
+            return false;
+        }
+        if (RowEncoder.get(targetSeq) == null || PropertyMap.get(sourceSeq, FlowTag.PARTITION) != null) {
+            return false;
+        }
+
+        Map sourceInfo = source.getConnectInfo();
+        Map targetInfo = target.getConnectInfo();
+        if (sourceInfo == null || targetInfo == null
+                || !"JDBC".equals(PropertyMap.getString(sourceInfo, ConnectorTag.CONNECTOR))
+                || !TARGETS.contains(PropertyMap.getString(targetInfo, ConnectorTag.CONNECTOR))) {
+            return false;
+        }
+
+        MappingRule rule = flowContext.getRules().get(PropertyMap.getString(targetSeq, FlowTag.RULE));
+        if (rule == null || rule.getRules().isEmpty()) {
+            return false;
+        }
+        for (MappingRuleItem item : rule.getRules()) {
+            if (item.getAction() != MappingRuleItem.RuleAction.reference
+                    || item.getSourceType() == MappingRuleItem.RuleType.DATE || item.getTargetType() == MappingRuleItem.RuleType.DATE) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // 처리한 행의 수, ResultSet의 컬럼 타입을 지원하지 않으면 -1
+    public static int run(Module source, Module target, MappingRule rule) throws Exception {
+        if (!(source.getConnector() instanceof ConnectorDB) || !(target.getConnector() instanceof StreamConnector)) {
+            return -1;
+        }
+
+        List<String> sources = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (MappingRuleItem item : rule.getRules()) {
+            sources.add(item.getSourceName());
+            names.add(item.getTargetName());
+        }
+
+        RowEncoder encoder = RowEncoder.get(target.getSequences());
+        Charset charset = Charset.forName(PropertyMap.getStringDefault(target.getConnectInfo(), ConnectorTag.CODE, "UTF-8"));
+
+        ConnectorDB reader = (ConnectorDB) source.getConnector();
+        return reader.export(encoder, sources, names, (StreamConnector) target.getConnector(), charset);
+    }
+}
@@ -0,0 +1,514 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.flow.FlowTag;
+import com.flatide.floodgate.agent.flow.module.Module;
+import com.flatide.floodgate.agent.flow.rule.FunctionProcessor;
+import com.flatide.floodgate.agent.flow.rule.MappingRule;
+import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+import com.flatide.floodgate.agent.template.DocumentTemplate;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+    PARALLELISM : CREATE, UPSERT를 N개의 connector로 나누어 쓴다, 각 connector는 자신의 connection과 transaction을 가진다
+
+    PARALLELKEY("COLUMN" 또는 ["COLUMN1", "COLUMN2"])가 있으면 그 컬럼 값의 hash로 행 단위로 나누고,
+    없으면 CREATE는 들어온 batch를 돌아가며(round-robin) 나눈다. UPSERT는 RULE의 KEY 컬럼을 사용한다.
+    같은 key의 행은 항상 같은 connector로 가므로 UPSERT의 순서가 유지된다.
+    partition마다 쓰레드와 크기가 QUEUE_DEPTH인 queue가 있으며, queue가 가득 차면 호출한 쓰레드가 기다린다.
+
+    CREATE에서 같은 key가 다른 partition으로 나뉘면 한 partition이 다른 partition의 commit 전의 행을 기다릴 수 있다.
+    partition이 TIMEOUT(초, 없으면 STALL_TIMEOUT) 동안 진행하지 못하면 실패로 처리하고 모두 rollback 한다.
+
+    commit은 모든 partition이 오류 없이 끝난 경우에만 차례로 수행한다(best-effort).
+    하나라도 실패하면 모두 rollback 하고, commit 도중 실패하면 아직 commit하지 않은 partition은 rollback 한다.
+    이미 commit된 partition은 되돌릴 수 없으므로 RESUMEFROM, STAGING과는 함께 사용할 수 없다.
+ */
+public class ParallelConnector extends ConnectorBase {
+    private static final Logger logger = LogManager.getLogger(ParallelConnector.class);
+
+    private static final int QUEUE_DEPTH = 2;
+    private static final long POLL_INTERVAL = 100;
+    private static final long STALL_TIMEOUT = 5 * 60 * 1000L;
+
+    // partition에 쓰기가 끝났음을 알리는 batch
+    private static final RecordBatch END = new RecordBatch();
+
+    private final List<Partition> partitions = new ArrayList<>();
+    private final List<String> keys = new ArrayList<>();
+
+    private Module module;
+    private long stallTimeout = STALL_TIMEOUT;
+    private int next = 0;
+    private boolean finished = false;
+    private boolean rolledBack = false;
+
+    // partition이 진행하지 못한 경우
+    private volatile Exception failure = null;
+
+    private class Partition implements Runnable {
+        final int index;
+        final Connector connector;
+        final BlockingQueue<RecordBatch> queue = new ArrayBlockingQueue<>(QUEUE_DEPTH);
+
+        MappingRule rule;
+        Thread thread;
+        RecordBatch pending = new RecordBatch();
+        boolean connected = false;
+
+        volatile boolean stopped = false;
+        volatile Throwable error = null;
+        // 쓰고 있는 batch를 시작한 시각, 쓰고 있지 않으면 0
+        volatile long busySince = 0;
+
+        Partition(int index, Connector connector) {
+            this.index = index;
+            this.connector = connector;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!this.stopped) {
+                    RecordBatch batch = this.queue.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                    if (batch == null) {
+                        continue;
+                    }
+                    this.busySince = System.currentTimeMillis();
+                    if (batch == END) {
+                        this.connector.createPartially(null, this.rule);
+                        break;
+                    }
+                    this.connector.createPartially(batch, this.rule);
+                    this.busySince = 0;
+                }
+            } catch (Throwable t) {
+                this.error = t;
+            } finally {
+                this.busySince = 0;
+                this.stopped = true;
+            }
+        }
+
+        boolean isStalled() {
+            long since = this.busySince;
+            return since > 0 && System.currentTimeMillis() - since > stallTimeout;
+        }
+
+        void put(RecordBatch batch) throws Exception {
+            while (!this.stopped) {
+                if (this.queue.offer(batch, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+                checkStalled(this);
+            }
+            checkError();
+            throw new IllegalStateException("Partition " + this.index + " is stopped.");
+        }
+
+        // lock을 기다리며 멈춘 문장을 취소하여 thread가 끝나도록 한다
+        void cancel() {
+            if (this.connector instanceof ConnectorDB) {
+                ((ConnectorDB) this.connector).cancel();
+            }
+        }
+
+        // 멈추지 않으면 false
+        boolean join(long timeout) throws InterruptedException {
+            if (this.thread != null) {
+                this.thread.join(timeout);
+                return !this.thread.isAlive();
+            }
+            return true;
+        }
+    }
+
+    public ParallelConnector(Map<String, Object> connectInfo, int parallelism, Object key) throws Exception {
+        for (int i = 0; i < parallelism; i++) {
+            this.partitions.add(new Partition(i, ConnectorFactory.shared().getConnector(connectInfo)));
+        }
+        if (key instanceof List) {
+            for (Object k : (List) key) {
+                this.keys.add(String.valueOf(k));
+            }
+        } else if (key != null && !String.valueOf(key).isEmpty()) {
+            this.keys.add(String.valueOf(key));
+        }
+    }
+
+    @Override
+    public void setDocumentTemplate(DocumentTemplate template) {
+        super.setDocumentTemplate(template);
+        for (Partition partition : this.partitions) {
+            partition.connector.setDocumentTemplate(template);
+        }
+    }
+
+    @Override
+    public FunctionProcessor getFunctionProcessor(String type) {
+        return this.partitions.get(0).connector.getFunctionProcessor(type);
+    }
+
+    @Override
+    public void connect(Context context, Module module) throws Exception {
+        if (PropertyMap.get(module.getSequences(), FlowTag.RESUMEFROM) != null
+                || PropertyMap.get(module.getSequences(), FlowTag.STAGING) != null) {
+            throw new IllegalArgumentException("PARALLELISM cannot be used with RESUMEFROM or STAGING.");
+        }
+        this.module = module;
+        int timeout = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.TIMEOUT, 0);
+        if (timeout > 0) {
+            this.stallTimeout = timeout * 1000L;
+        }
+        for (Partition partition : this.partitions) {
+            partition.connector.connect(context, module);
+            partition.connected = true;
+        }
+    }
+
+    // partition마다 param이 따로 만들어지도록 rule을 복사한다
+    @Override
+    public void beforeCreate(MappingRule rule) throws Exception {
+        if (this.keys.isEmpty() && FlowTag.UPSERT.name().equals(PropertyMap.getString(this.module.getSequences(), FlowTag.ACTION))) {
+            // 같은 key의 행이 다른 session에서 순서 없이 반영되지 않도록 한다
+            for (MappingRuleItem item : rule.getRules()) {
+                if (item.isKey()) {
+                    this.keys.add(item.getSourceName());
+                }
+            }
+            if (this.keys.isEmpty()) {
+                throw new IllegalArgumentException("UPSERT with PARALLELISM requires PARALLELKEY or KEY columns in RULE.");
+            }
+        }
+
+        String dbType = PropertyMap.getString((Map) this.module.getConnectInfo(), ConnectorTag.DBTYPE);
+        for (Partition partition : this.partitions) {
+            partition.rule = new MappingRule(rule);
+            partition.rule.setFunctionProcessor(partition.connector.getFunctionProcessor(dbType));
+            partition.connector.beforeCreate(partition.rule);
+        }
+
+        for (Partition partition : this.partitions) {
+            partition.thread = new Thread(partition, "floodgate-parallel-" + this.module.getName() + "-" + partition.index);
+            partition.thread.setDaemon(true);
+            partition.thread.start();
+        }
+    }
+
+    @Override
+    public int create(List<Map> items, MappingRule mappingRule) throws Exception {
+        // 모두 쓰기 전에 commit 되지 않도록 commit()에서 끝을 기다린다
+        dispatch(items);
+        return getSent();
+    }
+
+    @Override
+    public int createPartially(List<Map> items, MappingRule mappingRule) throws Exception {
+        if (items == null) {
+            finish();
+        } else {
+            dispatch(items);
+        }
+        return getSent();
+    }
+
+    /*
+        호출한 쓰레드에서 복사하므로 LobHandle은 source가 다음 buffer를 읽기 전에 값으로 읽는다
+     */
+    private void dispatch(List<Map> items) throws Exception {
+        checkError();
+        if (items.isEmpty()) {
+            return;
+        }
+
+        if (this.keys.isEmpty()) {
+            RecordBatch copy = new RecordBatch();
+            if (items instanceof RecordBatch) {
+                copy.appendFrom((RecordBatch) items);
+            } else {
+                for (Map item : items) {
+                    copy.add(item);
+                }
+            }
+            copy.materializeLobs();
+            this.partitions.get(this.next).put(copy);
+            this.next = (this.next + 1) % this.partitions.size();
+            return;
+        }
+
+        int size = this.partitions.size();
+        for (Map item : items) {
+            int hash;
+            if (this.keys.size() == 1) {
+                hash = Objects.hashCode(item.get(this.keys.get(0)));
+            } else {
+                hash = 1;
+                for (String key : this.keys) {
+                    hash = 31 * hash + Objects.hashCode(item.get(key));
+                }
+            }
+            this.partitions.get((hash & 0x7fffffff) % size).pending.add(item);
+        }
+        for (Partition partition : this.partitions) {
+            if (!partition.pending.isEmpty()) {
+                partition.pending.materializeLobs();
+                partition.put(partition.pending);
+                partition.pending = new RecordBatch();
+            }
+        }
+    }
+
+    // 모든 partition이 남은 행을 쓰고 끝나기를 기다린다
+    private void finish() throws Exception {
+        if (!this.finished) {
+            this.finished = true;
+
+            for (Partition partition : this.partitions) {
+                if (partition.thread != null) {
+                    partition.put(END);
+                }
+            }
+            for (Partition partition : this.partitions) {
+                while (!partition.join(POLL_INTERVAL)) {
+                    checkStalled(partition);
+                }
+            }
+            checkError();
+
+            this.module.setProgress(getSent());
+        }
+        checkError();
+    }
+
+    private void checkStalled(Partition partition) throws Exception {
+        if (this.failure == null && partition.isStalled()) {
+            this.failure = new Exception("Partition " + partition.index + " of " + this.module.getName() + " made no progress for "
+                    + (this.stallTimeout / 1000) + " seconds, it may be waiting for a row written by another partition.");
+        }
+        checkError();
+    }
+
+    private void checkError() throws Exception {
+        if (this.failure != null) {
+            throw this.failure;
+        }
+        for (Partition partition : this.partitions) {
+            Throwable t = partition.error;
+            if (t != null) {
+                if (t instanceof Exception) {
+                    throw (Exception) t;
+                }
+                throw new Exception(t);
+            }
+        }
+    }
+
+    @Override
+    public void afterCreate(MappingRule rule) throws Exception {
+        for (Partition partition : this.partitions) {
+            partition.connector.afterCreate(partition.rule != null ? partition.rule : rule);
+        }
+    }
+
+    @Override
+    public void commit() throws Exception {
+        if (this.rolledBack) {
+            // 쓰는 도중 실패하여 이미 rollback 되었다
+            return;
+        }
+        try {
+            finish();
+        } catch (Exception e) {
+            rollback();
+            throw e;
+        }
+
+        for (int i = 0; i < this.partitions.size(); i++) {
+            if (!this.partitions.get(i).connected) {
+                continue;
+            }
+            try {
+                this.partitions.get(i).connector.commit();
+            } catch (Exception e) {
+                for (int j = i + 1; j < this.partitions.size(); j++) {
+                    if (this.partitions.get(j).connected) {
+                        this.partitions.get(j).connector.rollback();
+                    }
+                }
+                if (i > 0) {
+                    logger.error(i + " of " + this.partitions.size() + " partitions are already committed.");
+                }
+                e.printStackTrace();
+                throw e;
+            }
+        }
+    }
+
+    /*
+        멈추지 않은 partition은 다른 partition의 lock을 기다리고 있을 수 있으므로 멈춘 partition부터 rollback 한다
+        그래도 멈추지 않으면 실행 중인 문장을 취소하고, 끝내 멈추지 않는 partition의 connection은 close()에서 반환된다
+     */
+    @Override
+    public void rollback() throws Exception {
+        this.rolledBack = true;
+        this.finished = true;
+        for (Partition partition : this.partitions) {
+            partition.stopped = true;
+            partition.queue.clear();
+        }
+
+        Exception error = null;
+        List<Partition> running = new ArrayList<>();
+        for (Partition partition : this.partitions) {
+            if (!partition.connected) {
+                continue;
+            }
+            if (partition.thread != null && partition.thread.isAlive()) {
+                running.add(partition);
+                continue;
+            }
+            Exception e = rollback(partition);
+            if (error == null) {
+                error = e;
+            }
+        }
+        for (Partition partition : running) {
+            if (!partition.join(POLL_INTERVAL)) {
+                partition.cancel();
+            }
+            if (!partition.join(this.stallTimeout)) {
+                logger.error("Partition " + partition.index + " of " + this.module.getName() + " is not stopped, its connection is rolled back on close.");
+                continue;
+            }
+            Exception e = rollback(partition);
+            if (error == null) {
+                error = e;
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    // 실패한 partition의 connection은 DB가 이미 끊었을 수 있으므로 그 오류는 원래 오류를 가리지 않도록 기록만 한다
+    private Exception rollback(Partition partition) {
+        try {
+            partition.connector.rollback();
+        } catch (Exception e) {
+            if (partition.error == null) {
+                return e;
+            }
+            logger.warn("Partition " + partition.index + " of " + this.module.getName() + " cannot be rolled back : " + e.getMessage());
+        }
+        return null;
+    }
+
+    @Override
+    public void close() throws Exception {
+        Exception error = null;
+        for (Partition partition : this.partitions) {
+            if (!partition.connected) {
+                continue;
+            }
+            try {
+                partition.stopped = true;
+                if (!partition.join(POLL_INTERVAL)) {
+                    partition.cancel();
+                    partition.join(this.stallTimeout);
+                }
+                partition.connector.close();
+            } catch (Exception e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
+    }
+
+    @Override
+    public int getSent() {
+        int sent = 0;
+        for (Partition partition : this.partitions) {
+            sent += partition.connector.getSent();
+        }
+        return sent;
+    }
+
+    // 행이 여러 partition으로 나뉘므로 위치를 알 수 없다
+    @Override
+    public int getErrorPosition() {
+        return -1;
+    }
+
+    @Override
+    public void beforeRead(MappingRule rule) throws Exception {
+    }
+
+    @Override
+    public int readBuffer(MappingRule rule, List buffer, int limit) throws Exception {
+        return 0;
+    }
+
+    @Override
+    public List<Map> readPartially(MappingRule rule) throws Exception {
+        return null;
+    }
+
+    @Override
+    public void afterRead() throws Exception {
+    }
+
+    @Override
+    public List<Map> read(MappingRule rule) {
+        return null;
+    }
+
+    @Override
+    public int update(MappingRule mappingRule, Object data) {
+        return 0;
+    }
+
+    @Override
+    public int delete() {
+        return 0;
+    }
+}
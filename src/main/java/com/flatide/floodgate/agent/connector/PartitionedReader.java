@@ -0,0 +1,399 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+import com.flatide.floodgate.agent.flow.stream.RecordSchema;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.math.BigDecimal;
+import java.math.MathContext;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    READ 쿼리를 여러 파티션으로 나누어 각자의 커넥션에서 동시에 읽는다
+
+    PARTITION : {
+        COLUMN      : 파티션 기준 컬럼
+        COUNT       : 파티션(reader) 수, 커넥션 풀의 MAXPOOLSIZE - 1을 넘지 않는다
+        METHOD      : RANGE | HASH | MOD | ROWID
+        SNAPSHOT    : true이면 모든 파티션이 같은 시점의 데이터를 읽는다 (Oracle, PostgreSQL)
+    }
+
+    RANGE   : 숫자 컬럼의 MIN/MAX를 COUNT 구간으로 나눈다
+    HASH    : Oracle/Tibero는 ORA_HASH, 그외는 숫자 컬럼의 MOD
+    MOD     : 숫자 컬럼의 MOD
+    ROWID   : Oracle의 ROWID block 번호로 나눈다 (TARGET 테이블만 가능)
+
+    각 reader가 읽은 RecordBatch는 하나의 queue로 합쳐지며, 읽는 순서는 보장하지 않는다.
+ */
+public class PartitionedReader {
+    private static final Logger logger = LogManager.getLogger(PartitionedReader.class);
+
+    public enum PARTITION {
+        COLUMN,
+        COUNT,
+        METHOD,
+        SNAPSHOT
+    }
+
+    public enum METHOD {
+        RANGE,
+        HASH,
+        MOD,
+        ROWID
+    }
+
+    // reader 하나가 끝났음을 알린다
+    private static final RecordBatch END = new RecordBatch();
+
+    private final Connection connection;
+    private final String connectName;
+    private final Map connectInfo;
+    private final String dbType;
+
+    private final String column;
+    private final int count;
+    private final METHOD method;
+    private final boolean snapshot;
+
+    private BlockingQueue<RecordBatch> queue;
+    private ExecutorService executor;
+    private int running = 0;
+
+    private volatile boolean closed = false;
+    private volatile Exception error = null;
+
+    // PostgreSQL exported snapshot
+    private String snapshotId = null;
+
+    public PartitionedReader(Connection connection, String connectName, Map connectInfo, Map partition) {
+        this.connection = connection;
+        this.connectName = connectName;
+        this.connectInfo = connectInfo;
+        this.dbType = PropertyMap.getStringDefault(connectInfo, ConnectorTag.DBTYPE, "").toUpperCase();
+
+        this.column = PropertyMap.getString(partition, PARTITION.COLUMN);
+        // module이 이미 풀의 커넥션 하나를 사용하고 있으므로 나머지 커넥션만큼만 reader를 만든다
+        int count = PropertyMap.getIntegerDefault(partition, PARTITION.COUNT, 4);
+        int maxPoolSize = ConnectionPoolManager.shared().getMaxPoolSize(connectInfo);
+        if (maxPoolSize == 1) {
+            throw new IllegalArgumentException("Partitioned read requires MAXPOOLSIZE of 2 or more.");
+        }
+        if (maxPoolSize > 0 && count > maxPoolSize - 1) {
+            logger.warn("PARTITION.COUNT " + count + " exceeds the connection pool of " + ConnectionPoolManager.shared().getKey(connectName, connectInfo) + ", reduced to " + (maxPoolSize - 1) + ".");
+            count = maxPoolSize - 1;
+        }
+        this.count = count;
+        this.method = METHOD.valueOf(PropertyMap.getStringDefault(partition, PARTITION.METHOD, "HASH").toUpperCase());
+        Object snapshot = PropertyMap.get(partition, PARTITION.SNAPSHOT);
+        this.snapshot = snapshot != null && Boolean.parseBoolean(String.valueOf(snapshot));
+    }
+
+    /*
+        columns, table, condition : TARGET을 사용하는 경우
+        sql : SQL을 사용하는 경우, 파티션 조건은 SQL을 감싸서 적용한다
+        params : condition 또는 sql의 바인드 변수 값, 모든 파티션과 MIN/MAX 조회에 같은 값을 바인딩한다
+     */
+    public void start(String columns, String table, String condition, String sql, List<Object> params, int fetchSize, int batchSize) throws Exception {
+        if (this.method != METHOD.ROWID && (this.column == null || this.column.isEmpty())) {
+            throw new IllegalArgumentException("PARTITION.COLUMN is required for " + this.method + " partitioning.");
+        }
+        if (this.method == METHOD.ROWID) {
+            if (!"ORACLE".equals(this.dbType)) {
+                throw new IllegalArgumentException("ROWID partitioning is supported only for Oracle.");
+            }
+            if (sql != null) {
+                throw new IllegalArgumentException("ROWID partitioning cannot be used with SQL.");
+            }
+        }
+
+        String from;
+        String where;
+        String select;
+        if (sql != null) {
+            from = "(" + sql + ") P";
+            where = "";
+            select = "*";
+        } else {
+            from = table;
+            where = (condition != null && !condition.isEmpty()) ? "(" + condition + ")" : "";
+            select = columns;
+        }
+
+        if (this.snapshot) {
+            from = prepareSnapshot(from, sql != null);
+        }
+
+        List<String> predicates = makePredicates(from, where, params);
+
+        this.queue = new ArrayBlockingQueue<>(predicates.size() * 2);
+        String prefix = "floodgate-partition-" + this.method.name().toLowerCase() + "-";
+        AtomicInteger sequence = new AtomicInteger(0);
+        this.executor = Executors.newFixedThreadPool(predicates.size(), r -> {
+            Thread thread = new Thread(r, prefix + sequence.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        try {
+            for (String predicate : predicates) {
+                String query = "SELECT " + select + " FROM " + from + " WHERE ";
+                if (where.isEmpty()) {
+                    query += predicate;
+                } else {
+                    query += where + " AND (" + predicate + ")";
+                }
+                logger.debug(query);
+
+                final String partitionQuery = query;
+                this.executor.execute(() -> read(partitionQuery, params, fetchSize, batchSize));
+                this.running++;
+            }
+        } finally {
+            // 제출한 파티션은 끝까지 읽고 쓰레드는 종료된다
+            this.executor.shutdown();
+        }
+    }
+
+    // 다음 batch, 모든 파티션을 다 읽은 경우 null
+    public RecordBatch next() throws Exception {
+        while (this.running > 0) {
+            RecordBatch batch = this.queue.take();
+            if (this.error != null) {
+                throw this.error;
+            }
+            if (batch == END) {
+                this.running--;
+                continue;
+            }
+            return batch;
+        }
+        if (this.error != null) {
+            throw this.error;
+        }
+        return null;
+    }
+
+    public void close() {
+        this.closed = true;
+        if (this.executor != null) {
+            this.executor.shutdownNow();
+        }
+        if (this.queue != null) {
+            this.queue.clear();
+        }
+    }
+
+    private String prepareSnapshot(String from, boolean isSql) throws Exception {
+        switch (this.dbType) {
+            case "ORACLE":
+                if (isSql) {
+                    logger.warn("Snapshot of Oracle is not applied to SQL, use AS OF SCN in SQL.");
+                    return from;
+                }
+                try (Statement stmt = this.connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT DBMS_FLASHBACK.GET_SYSTEM_CHANGE_NUMBER FROM DUAL")) {
+                    rs.next();
+                    String scn = rs.getBigDecimal(1).toPlainString();
+                    logger.info("Partitioned read as of SCN " + scn);
+                    return from + " AS OF SCN " + scn;
+                }
+            case "POSTGRESQL":
+                // 현재 트랜잭션의 snapshot을 export하고 각 reader가 import한다, export한 트랜잭션은 읽기가 끝날 때까지 유지된다
+                this.connection.commit();
+                this.connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                try (Statement stmt = this.connection.createStatement();
+                     ResultSet rs = stmt.executeQuery("SELECT pg_export_snapshot()")) {
+                    rs.next();
+                    this.snapshotId = rs.getString(1);
+                    logger.info("Partitioned read with snapshot " + this.snapshotId);
+                }
+                return from;
+            default:
+                logger.warn("Snapshot is not supported for " + this.dbType + ", partitions are read independently.");
+                return from;
+        }
+    }
+
+    private List<String> makePredicates(String from, String where, List<Object> params) throws Exception {
+        List<String> predicates = new ArrayList<>();
+
+        switch (this.method) {
+            case RANGE:
+            {
+                String query = "SELECT MIN(" + this.column + "), MAX(" + this.column + ") FROM " + from;
+                if (!where.isEmpty()) {
+                    query += " WHERE " + where;
+                }
+
+                BigDecimal min;
+                BigDecimal max;
+                try (PreparedStatement ps = this.connection.prepareStatement(query)) {
+                    BoundSql.bind(ps, 1, params);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        rs.next();
+                        min = rs.getBigDecimal(1);
+                        max = rs.getBigDecimal(2);
+                    }
+                } catch (Exception e) {
+                    throw new IllegalArgumentException("RANGE partitioning requires a numeric column : " + e.getMessage(), e);
+                }
+
+                if (min == null || max == null || min.compareTo(max) == 0 || this.count < 2) {
+                    predicates.add("1 = 1");
+                    break;
+                }
+
+                // 경계값, 첫 구간은 NULL을 포함하고 마지막 구간은 상한이 없다
+                BigDecimal step = max.subtract(min).divide(BigDecimal.valueOf(this.count), MathContext.DECIMAL64);
+                String previous = null;
+                for (int i = 1; i <= this.count; i++) {
+                    String bound = i < this.count ? min.add(step.multiply(BigDecimal.valueOf(i))).toPlainString() : null;
+                    if (previous == null) {
+                        predicates.add(this.column + " < " + bound + " OR " + this.column + " IS NULL");
+                    } else if (bound == null) {
+                        predicates.add(this.column + " >= " + previous);
+                    } else {
+                        predicates.add(this.column + " >= " + previous + " AND " + this.column + " < " + bound);
+                    }
+                    previous = bound;
+                }
+                break;
+            }
+            case HASH:
+                if ("ORACLE".equals(this.dbType) || "TIBERO".equals(this.dbType)) {
+                    for (int i = 0; i < this.count; i++) {
+                        String predicate = "ORA_HASH(" + this.column + ", " + (this.count - 1) + ") = " + i;
+                        predicates.add(i == 0 ? predicate + " OR " + this.column + " IS NULL" : predicate);
+                    }
+                } else {
+                    // 다른 DB는 숫자 컬럼의 나머지로 나눈다
+                    addModuloPredicates(predicates);
+                }
+                break;
+            case MOD:
+                addModuloPredicates(predicates);
+                break;
+            case ROWID:
+                for (int i = 0; i < this.count; i++) {
+                    predicates.add(makeModulo("DBMS_ROWID.ROWID_BLOCK_NUMBER(ROWID)") + " = " + i);
+                }
+                break;
+        }
+
+        return predicates;
+    }
+
+    private void addModuloPredicates(List<String> predicates) {
+        for (int i = 0; i < this.count; i++) {
+            String predicate = makeModulo("ABS(" + this.column + ")") + " = " + i;
+            predicates.add(i == 0 ? predicate + " OR " + this.column + " IS NULL" : predicate);
+        }
+    }
+
+    private String makeModulo(String expression) {
+        if ("MSSQL".equals(this.dbType)) {
+            return "(" + expression + " % " + this.count + ")";
+        }
+        return "MOD(" + expression + ", " + this.count + ")";
+    }
+
+    private void read(String query, List<Object> params, int fetchSize, int batchSize) {
+        try (Connection connection = ConnectorDB.openConnection(this.connectName, this.connectInfo)) {
+            connection.setAutoCommit(false);
+            try {
+                if (this.snapshotId != null) {
+                    connection.setTransactionIsolation(Connection.TRANSACTION_REPEATABLE_READ);
+                    try (Statement stmt = connection.createStatement()) {
+                        stmt.execute("SET TRANSACTION SNAPSHOT '" + this.snapshotId + "'");
+                    }
+                }
+
+                try (PreparedStatement ps = connection.prepareStatement(query)) {
+                    if (fetchSize != 0) {
+                        ps.setFetchSize(fetchSize);
+                    }
+                    BoundSql.bind(ps, 1, params);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        RecordSchema schema = ConnectorDB.makeSchema(rs.getMetaData());
+                        RecordBatch batch = new RecordBatch(schema);
+                        while (!this.closed && rs.next()) {
+                            // worker의 커넥션은 먼저 닫힐 수 있으므로 LOB은 읽어서 전달한다
+                            ConnectorDB.fetchRow(rs, batch, -1);
+                            if (batch.size() >= batchSize) {
+                                if (!put(batch)) {
+                                    return;
+                                }
+                                batch = new RecordBatch(schema);
+                            }
+                        }
+                        if (!batch.isEmpty()) {
+                            put(batch);
+                        }
+                    }
+                }
+            } finally {
+                // read only
+                connection.rollback();
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            if (this.error == null) {
+                this.error = e;
+            }
+        } finally {
+            put(END);
+        }
+    }
+
+    private boolean put(RecordBatch batch) {
+        try {
+            while (!this.closed) {
+                if (this.queue.offer(batch, 100, TimeUnit.MILLISECONDS)) {
+                    return true;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return false;
+    }
+}
@@ -0,0 +1,232 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.ConfigurationManager;
+import com.flatide.floodgate.FloodgateConstants;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    datasource별 테이블 존재 여부와 컬럼 정보를 TTL 동안 재사용한다
+    Oracle 등의 catalog 조회는 느리므로 CHECK, designer 호출마다 반복하지 않는다
+
+    datasource : ConnectionPoolManager.getKey()와 같은 값 (이름 또는 url#user)
+    존재하지 않는 테이블은 곧 생성될 수 있으므로 저장하지 않는다
+    TTL은 agent.schemaCache.ttl (초, 기본 600), 테이블 변경시에는 invalidate()를 호출한다
+ */
+public final class SchemaCache {
+    private static final SchemaCache instance = new SchemaCache();
+
+    private static final long DEFAULT_TTL = 600 * 1000L;
+
+    public static class Column {
+        final int type;
+        final String typeName;
+        final int displaySize;
+
+        Column(int type, String typeName, int displaySize) {
+            this.type = type;
+            this.typeName = typeName;
+            this.displaySize = displaySize;
+        }
+
+        public int getType() {
+            return this.type;
+        }
+
+        public String getTypeName() {
+            return this.typeName;
+        }
+
+        public int getDisplaySize() {
+            return this.displaySize;
+        }
+    }
+
+    private static class Entry {
+        final long expire;
+        // 조회한 순서의 컬럼 label, 컬럼 정보를 읽지 않은 경우 null
+        volatile Map<String, Column> columns;
+
+        Entry(long expire) {
+            this.expire = expire;
+        }
+    }
+
+    private final Map<String, Entry> cache = new ConcurrentHashMap<>();
+
+    private final AtomicLong hit = new AtomicLong(0);
+    private final AtomicLong miss = new AtomicLong(0);
+
+    private SchemaCache() {
+    }
+
+    public static SchemaCache shared() {
+        return instance;
+    }
+
+    private static String makeKey(String datasource, String table) {
+        return datasource + "|" + table.toUpperCase();
+    }
+
+    private long getTTL() {
+        Object ttl = null;
+        try {
+            ttl = ConfigurationManager.shared().get(FloodgateConstants.AGENT_SCHEMA_CACHE_TTL);
+        } catch (NullPointerException e) {
+            // 설정이 로드되지 않은 경우
+        }
+        return ttl != null ? Long.parseLong(String.valueOf(ttl)) * 1000L : DEFAULT_TTL;
+    }
+
+    private Entry getEntry(String key) {
+        Entry entry = this.cache.get(key);
+        if (entry != null && entry.expire < System.currentTimeMillis()) {
+            this.cache.remove(key, entry);
+            entry = null;
+        }
+        return entry;
+    }
+
+    // 연결 없이 캐시만 확인한다, 알 수 없으면 false
+    public boolean isKnown(String datasource, String table) {
+        if (getEntry(makeKey(datasource, table)) != null) {
+            this.hit.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    // 연결 없이 캐시만 확인한다, 알 수 없으면 null
+    public Map<String, Column> getCachedColumns(String datasource, String table) {
+        Entry entry = getEntry(makeKey(datasource, table));
+        if (entry != null && entry.columns != null) {
+            this.hit.incrementAndGet();
+            return entry.columns;
+        }
+        return null;
+    }
+
+    public boolean exists(Connection connection, String datasource, String table) throws SQLException {
+        String key = makeKey(datasource, table);
+        if (getEntry(key) != null) {
+            this.hit.incrementAndGet();
+            return true;
+        }
+        this.miss.incrementAndGet();
+
+        DatabaseMetaData databaseMetaData = connection.getMetaData();
+        boolean exist;
+        try (ResultSet resultSet = databaseMetaData.getTables(null, null, table, new String[] {"TABLE"})) {
+            exist = resultSet.next();
+        }
+        if (exist) {
+            this.cache.putIfAbsent(key, new Entry(System.currentTimeMillis() + getTTL()));
+        }
+        return exist;
+    }
+
+    /*
+        컬럼 label과 타입, catalog 대신 행을 읽지 않는 조회의 ResultSetMetaData를 사용한다
+     */
+    public Map<String, Column> getColumns(Connection connection, String datasource, String table) throws SQLException {
+        String key = makeKey(datasource, table);
+        Entry entry = getEntry(key);
+        if (entry != null && entry.columns != null) {
+            this.hit.incrementAndGet();
+            return entry.columns;
+        }
+        this.miss.incrementAndGet();
+
+        Map<String, Column> columns = new LinkedHashMap<>();
+        try (PreparedStatement ps = connection.prepareStatement("SELECT * FROM " + table + " WHERE 1 = 0");
+             ResultSet rs = ps.executeQuery()) {
+            ResultSetMetaData rsmeta = rs.getMetaData();
+            for (int i = 1; i <= rsmeta.getColumnCount(); i++) {
+                columns.put(rsmeta.getColumnLabel(i), new Column(rsmeta.getColumnType(i), rsmeta.getColumnTypeName(i), rsmeta.getColumnDisplaySize(i)));
+            }
+        }
+        columns = Collections.unmodifiableMap(columns);
+
+        if (entry == null) {
+            entry = new Entry(System.currentTimeMillis() + getTTL());
+            Entry previous = this.cache.putIfAbsent(key, entry);
+            if (previous != null) {
+                entry = previous;
+            }
+        }
+        entry.columns = columns;
+        return columns;
+    }
+
+    // 대문자 컬럼 이름별 java.sql.Types, 바인딩 타입으로 사용된다
+    public Map<String, Integer> getColumnTypes(Connection connection, String datasource, String table) throws SQLException {
+        Map<String, Integer> types = new HashMap<>();
+        for (Map.Entry<String, Column> e : getColumns(connection, datasource, table).entrySet()) {
+            types.put(e.getKey().toUpperCase(), e.getValue().getType());
+        }
+        return types;
+    }
+
+    public void invalidate(String datasource, String table) {
+        this.cache.remove(makeKey(datasource, table));
+    }
+
+    // datasource 정보가 변경된 경우
+    public void invalidate(String datasource) {
+        String prefix = datasource + "|";
+        Iterator<String> iterator = this.cache.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (iterator.next().startsWith(prefix)) {
+                iterator.remove();
+            }
+        }
+    }
+
+    public void clear() {
+        this.cache.clear();
+    }
+
+    public Map<String, Object> getInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        info.put("Entries", this.cache.size());
+        info.put("Hit", this.hit.get());
+        info.put("Miss", this.miss.get());
+        return info;
+    }
+}
@@ -0,0 +1,186 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
+import com.flatide.floodgate.agent.flow.FlowContext;
+import com.flatide.floodgate.agent.flow.FlowTag;
+import com.flatide.floodgate.agent.flow.module.Module;
+import com.flatide.floodgate.agent.flow.rule.FunctionProcessor;
+import com.flatide.floodgate.agent.flow.rule.MappingRule;
+import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/*
+    같은 datasource의 READ -> CREATE PIPE를 INSERT INTO ... SELECT 하나로 DB 안에서 처리한다
+
+    RULE의 모든 항목이 SQL로 표현될 수 있어야 한다
+        reference : 원본 컬럼
+        literal : SQL 식, $COL$ 은 원본 컬럼
+        system : {CONTEXT.path} 값을 바인딩
+        function : TARGET_DATE 처럼 DB 함수로 바뀌는 경우만
+    그 밖의 경우나 CREATE module에 PUSHDOWN: false 가 있으면 기존과 같이 행 단위로 처리한다
+ */
+public class SqlPushdown {
+    // 읽기 범위를 나누거나 제한하는 READ 옵션
+    private static final FlowTag[] SOURCE_EXCLUDES = {
+            FlowTag.PARTITION, FlowTag.WATERMARK, FlowTag.LIMIT, FlowTag.OFFSET, FlowTag.KEYSET, FlowTag.SAMPLE
+    };
+
+    // 행 단위 처리가 필요한 CREATE 옵션
+    private static final FlowTag[] TARGET_EXCLUDES = {
+            FlowTag.BULKLOAD, FlowTag.COMMITSIZE, FlowTag.COMMITINTERVAL, FlowTag.RESUMEFROM
+    };
+
+    public static boolean isApplicable(Module source, Module target, FlowContext flowContext) throws Exception {
+        Map<String, Object> sourceSeq = source.getSequences();
+        Map<String, Object> targetSeq = target.getSequences();
+        if (sourceSeq == null || targetSeq == null) {
+            return false;
+        }
+        if (!FlowTag.READ.name().equals(PropertyMap.getString(sourceSeq, FlowTag.ACTION))
+                || !FlowTag.CREATE.name().equals(PropertyMap.getString(targetSeq, FlowTag.ACTION))) {
+            return false;
+        }
+        Boolean enabled = (Boolean) PropertyMap.getDefault(targetSeq, FlowTag.PUSHDOWN, Boolean.TRUE);
+        if (!enabled) {
+            return false;
+        }
+
+        Object connectRef = PropertyMap.get(sourceSeq, FlowTag.CONNECT);
+        if (connectRef == null || !connectRef.equals(PropertyMap.get(targetSeq, FlowTag.CONNECT))) {
+            return false;
+        }
+        Map connectInfo = target.getConnectInfo();
+        if (!"JDBC".equals(PropertyMap.getString(connectInfo, ConnectorTag.CONNECTOR))) {
+            return false;
+        }
+
+        for (FlowTag tag : SOURCE_EXCLUDES) {
+            if (PropertyMap.get(sourceSeq, tag) != null) {
+                return false;
+            }
+        }
+        for (FlowTag tag : TARGET_EXCLUDES) {
+            if (PropertyMap.get(targetSeq, tag) != null) {
+                return false;
+            }
+        }
+        if ("ISOLATE".equalsIgnoreCase(PropertyMap.getString(targetSeq, FlowTag.ERRORMODE))) {
+            return false;
+        }
+        if (PropertyMap.getString(targetSeq, FlowTag.TARGET) == null
+                || (PropertyMap.getString(sourceSeq, FlowTag.TARGET) == null && PropertyMap.getString(sourceSeq, FlowTag.SQL) == null)) {
+            return false;
+        }
+
+        MappingRule rule = flowContext.getRules().get(PropertyMap.getString(targetSeq, FlowTag.RULE));
+        if (rule == null || rule.getRules().isEmpty()) {
+            return false;
+        }
+        FunctionProcessor processor = Dialect.get(PropertyMap.getString(connectInfo, ConnectorTag.DBTYPE)).getFunctionProcessor();
+        for (MappingRuleItem item : rule.getRules()) {
+            // 날짜 형식 변환은 Java에서 처리된다
+            if (item.getSourceType() == MappingRuleItem.RuleType.DATE || item.getTargetType() == MappingRuleItem.RuleType.DATE) {
+                return false;
+            }
+            switch (item.getAction()) {
+                case reference:
+                case literal:
+                case system:
+                    break;
+                case function:
+                    if ("?".equals(processor.process(item))) {
+                        return false;
+                    }
+                    break;
+                default:
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /*
+        params : 쿼리의 바인드 변수 값이 순서대로 추가된다
+     */
+    public static String makeQuery(Module source, Module target, MappingRule rule, FunctionProcessor processor, List<Object> params) throws Exception {
+        Map<String, Object> sourceSeq = source.getSequences();
+        Context targetContext = target.getContext();
+
+        StringBuilder columns = new StringBuilder();
+        StringBuilder values = new StringBuilder();
+        for (MappingRuleItem item : rule.getRules()) {
+            if (columns.length() > 0) {
+                columns.append(", ");
+                values.append(", ");
+            }
+            columns.append(item.getTargetName());
+
+            String name = item.getSourceName();
+            switch (item.getAction()) {
+                case reference:
+                    values.append(name);
+                    break;
+                case literal:
+                    values.append(name.replaceAll("\\$(.+?)\\$", "$1"));
+                    break;
+                case system:
+                    values.append("?");
+                    params.add(targetContext.get(name.substring(1, name.length() - 1)));
+                    break;
+                case function:
+                    values.append(processor.process(item));
+                    break;
+                default:
+                    throw new IllegalArgumentException(name + " cannot be used in INSERT ... SELECT.");
+            }
+        }
+
+        String query = "INSERT INTO " + PropertyMap.getString(target.getSequences(), FlowTag.TARGET)
+                + " (" + columns + ") SELECT " + values + " FROM ";
+
+        String sql = PropertyMap.getString(sourceSeq, FlowTag.SQL);
+        if (sql != null) {
+            BoundSql bound = BoundSql.parse(sql);
+            query += "(" + bound.getSql() + ") S";
+            params.addAll(bound.resolve(source.getContext()));
+        } else {
+            query += PropertyMap.getString(sourceSeq, FlowTag.TARGET);
+            String condition = PropertyMap.getString(sourceSeq, FlowTag.CONDITION);
+            if (condition != null && !condition.isEmpty()) {
+                BoundSql bound = BoundSql.parse(condition);
+                query += " WHERE " + bound.getSql();
+                params.addAll(bound.resolve(source.getContext()));
+            }
+        }
+        return query;
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.flow.rule.MappingRule;
+import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
+import com.flatide.floodgate.agent.template.DocumentTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.AtomicLong;
+
+/*
+    template으로 생성한 SQL과 바인딩 파라미터 목록을 flow 실행간에 공유한다
+
+    key는 datasource, template signature, rule, 입력 컬럼으로 구성되며
+    PreparedStatement 자체의 재사용은 커넥션 풀의 드라이버 statement cache가 담당한다
+ */
+public final class StatementCache {
+    private static final StatementCache instance = new StatementCache();
+
+    private static final int MAX_ENTRIES = 1000;
+
+    public static class Entry {
+        final String query;
+        final List<String> param;
+
+        Entry(String query, List<String> param) {
+            this.query = query;
+            this.param = Collections.unmodifiableList(new ArrayList<>(param));
+        }
+
+        public String getQuery() {
+            return this.query;
+        }
+
+        public List<String> getParam() {
+            return this.param;
+        }
+    }
+
+    private final Map<String, Entry> cache = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    private final AtomicLong hit = new AtomicLong(0);
+    private final AtomicLong miss = new AtomicLong(0);
+
+    private StatementCache() {
+    }
+
+    public static StatementCache shared() {
+        return instance;
+    }
+
+    public static String makeKey(String datasource, DocumentTemplate template, Context context, MappingRule rule, Collection<String> columns) {
+        StringBuilder builder = new StringBuilder();
+        builder.append(datasource).append('\n');
+        builder.append(template.getSignature(context)).append('\n');
+        for (MappingRuleItem item : rule.getRules()) {
+            builder.append(item.getTargetName()).append(':').append(item.getTargetType()).append(':').append(item.getTargetTypeSub());
+            builder.append(item.isKey() ? ":KEY=" : "=");
+            builder.append(item.getAction()).append(':').append(item.getSourceName()).append(':').append(item.getSourceType()).append(';');
+        }
+        builder.append('\n');
+        builder.append(new TreeSet<>(columns));
+        return builder.toString();
+    }
+
+    public Entry get(String key) {
+        Entry entry;
+        synchronized (this.cache) {
+            entry = this.cache.get(key);
+        }
+        if (entry == null) {
+            this.miss.incrementAndGet();
+        } else {
+            this.hit.incrementAndGet();
+        }
+        return entry;
+    }
+
+    public void put(String key, String query, List<String> param) {
+        synchronized (this.cache) {
+            this.cache.put(key, new Entry(query, param));
+        }
+    }
+
+    // template이나 rule 메타가 변경된 경우
+    public void clear() {
+        synchronized (this.cache) {
+            this.cache.clear();
+        }
+    }
+
+    public Map<String, Object> getInfo() {
+        Map<String, Object> info = new LinkedHashMap<>();
+        synchronized (this.cache) {
+            info.put("Entries", this.cache.size());
+        }
+        info.put("Hit", this.hit.get());
+        info.put("Miss", this.miss.get());
+        return info;
+    }
+}
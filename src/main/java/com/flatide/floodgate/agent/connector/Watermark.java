@@ -0,0 +1,282 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.flatide.floodgate.ConfigurationManager;
+import com.flatide.floodgate.FloodgateConstants;
+import com.flatide.floodgate.agent.meta.MetaManager;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import org.apache.logging.log4j.LogManager;
+import org.apache.logging.log4j.Logger;
+
+import java.io.FileNotFoundException;
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    WATERMARK : 증분 조회
+
+    조회 시작시 컬럼의 MAX 값을 상한으로 정하고 (이전 값 - OVERLAP, 상한] 범위만 읽는다.
+    상한은 flow가 성공한 후에 meta.source.tableForWatermark에 저장되며 다음 실행의 하한이 된다.
+    OVERLAP으로 다시 읽는 행이 있으므로 대상은 UPSERT를 사용하는 것이 좋다.
+ */
+public class Watermark {
+    private static final Logger logger = LogManager.getLogger(Watermark.class);
+
+    public enum WATERMARK {
+        COLUMN,
+        // TIMESTAMP 컬럼은 초, 숫자 컬럼은 값의 차이
+        OVERLAP,
+        // 저장된 값이 없는 경우의 하한
+        INITIAL,
+        // 저장 key, 기본값은 flow ID + "." + module 이름
+        KEY
+    }
+
+    private enum TYPE {
+        TIMESTAMP,
+        NUMBER,
+        STRING
+    }
+
+    private final String key;
+    private final String column;
+    private final BigDecimal overlap;
+
+    private TYPE type = null;
+    private Object low = null;
+    private Object high = null;
+
+    public Watermark(Map config, String defaultKey) throws Exception {
+        this.column = PropertyMap.getString(config, WATERMARK.COLUMN);
+        if (this.column == null || this.column.isEmpty()) {
+            throw new IllegalArgumentException("WATERMARK.COLUMN is required.");
+        }
+        String key = PropertyMap.getString(config, WATERMARK.KEY);
+        this.key = key == null || key.isEmpty() ? defaultKey : key;
+
+        String overlap = PropertyMap.getString(config, WATERMARK.OVERLAP);
+        this.overlap = overlap == null || overlap.isEmpty() ? BigDecimal.ZERO : new BigDecimal(overlap);
+
+        Map<String, Object> stored = load();
+        if (stored != null) {
+            this.type = TYPE.valueOf((String) stored.get("TYPE"));
+            this.low = parse(this.type, (String) stored.get("VALUE"));
+        } else {
+            String initial = PropertyMap.getString(config, WATERMARK.INITIAL);
+            if (initial != null && !initial.isEmpty()) {
+                this.low = initial;
+            }
+        }
+    }
+
+    /*
+        from : 테이블 또는 (SQL) 형태의 조회 대상
+        condition : 기존 조건, 없으면 null
+        params : from, condition의 바인드 변수 값
+     */
+    public void prepare(Connection connection, String from, String condition, List<Object> params) throws Exception {
+        String query = "SELECT MAX(" + this.column + ") FROM " + from;
+        if (condition != null && !condition.isEmpty()) {
+            query += " WHERE " + condition;
+        }
+        logger.debug(query);
+
+        try (PreparedStatement ps = connection.prepareStatement(query)) {
+            BoundSql.bind(ps, 1, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Object value = rs.getObject(1);
+                    if (value instanceof oracle.sql.TIMESTAMP) {
+                        value = ((oracle.sql.TIMESTAMP) value).timestampValue();
+                    }
+                    this.high = normalize(value);
+                }
+            }
+        }
+
+        if (this.high != null) {
+            if (this.type == null) {
+                this.type = getType(this.high);
+            }
+            if (this.low instanceof String && this.type != TYPE.STRING) {
+                // INITIAL
+                this.low = parse(this.type, (String) this.low);
+            }
+        }
+        logger.info("Watermark " + this.key + " : (" + this.low + ", " + this.high + "], overlap " + this.overlap);
+    }
+
+    public String getCondition() {
+        if (this.high == null) {
+            // 대상이 비어있다
+            return "1 = 0";
+        }
+        if (this.low == null) {
+            return this.column + " <= ?";
+        }
+        return this.column + " > ? AND " + this.column + " <= ?";
+    }
+
+    // 바인딩한 파라미터 수를 리턴한다
+    public int bind(PreparedStatement ps, int index) throws Exception {
+        int count = 0;
+        if (this.high == null) {
+            return count;
+        }
+        if (this.low != null) {
+            BindingPlan.setValue(ps, index + count++, subtractOverlap(this.low), Types.OTHER);
+        }
+        BindingPlan.setValue(ps, index + count++, this.high, Types.OTHER);
+        return count;
+    }
+
+    /*
+        대상이 비어있는 경우 상한이 없으므로 저장하지 않는다
+        최신 행이 삭제되어 상한이 이전 값보다 작아져도 watermark는 뒤로 가지 않는다
+     */
+    public void save() throws Exception {
+        if (this.high == null) {
+            return;
+        }
+
+        Object value = this.high;
+        if (this.low != null && this.low.getClass() == this.high.getClass()
+                && ((Comparable) this.low).compareTo(this.high) > 0) {
+            value = this.low;
+        }
+
+        Map<String, Object> data = new HashMap<>();
+        data.put("TYPE", this.type.name());
+        data.put("VALUE", value.toString());
+        data.put("COLUMN", this.column);
+        data.put("UPDATED", new Timestamp(System.currentTimeMillis()).toString());
+
+        String table = getTable();
+        Map<String, Object> row = new HashMap<>();
+        row.put("ID", this.key);
+        row.put("DATA", data);
+        if (!MetaManager.shared().update(table, "ID", row, true)) {
+            row.put("ID", this.key);
+            MetaManager.shared().insert(table, "ID", row, true);
+        }
+        logger.info("Watermark " + this.key + " is saved : " + value);
+    }
+
+    public String getKey() {
+        return this.key;
+    }
+
+    private static String getTable() {
+        String table = ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_WATERMARK);
+        if (table == null || table.isEmpty()) {
+            throw new IllegalStateException(FloodgateConstants.META_SOURCE_TABLE_FOR_WATERMARK + " is not configured.");
+        }
+        return table;
+    }
+
+    /*
+        저장된 값이 없는 경우만 처음 실행으로 본다
+        meta 저장소의 오류를 처음 실행으로 처리하면 전체를 다시 읽게 되므로 그대로 던진다
+     */
+    @SuppressWarnings("unchecked")
+    private Map<String, Object> load() throws Exception {
+        String table = getTable();
+        Map<String, Object> row;
+        try {
+            row = MetaManager.shared().read(table, this.key);
+        } catch (FileNotFoundException e) {
+            // file 저장소는 key의 파일이 없으면 예외가 발생한다
+            row = null;
+        }
+        if (row == null) {
+            logger.info("Watermark " + this.key + " is not exist.");
+            return null;
+        }
+        Object data = row.get("DATA");
+        if (data instanceof String) {
+            data = new ObjectMapper().readValue((String) data, Map.class);
+        }
+        return (Map<String, Object>) data;
+    }
+
+    private Object subtractOverlap(Object value) {
+        if (this.overlap.signum() == 0) {
+            return value;
+        }
+        switch (this.type) {
+            case TIMESTAMP:
+            {
+                Timestamp timestamp = (Timestamp) value;
+                Timestamp result = new Timestamp(timestamp.getTime() - this.overlap.multiply(BigDecimal.valueOf(1000)).longValue());
+                return result;
+            }
+            case NUMBER:
+                return ((BigDecimal) value).subtract(this.overlap);
+            default:
+                return value;
+        }
+    }
+
+    private static Object normalize(Object value) {
+        if (value instanceof java.util.Date && !(value instanceof Timestamp)) {
+            return new Timestamp(((java.util.Date) value).getTime());
+        }
+        if (value instanceof Number && !(value instanceof BigDecimal)) {
+            return new BigDecimal(value.toString());
+        }
+        return value;
+    }
+
+    private static TYPE getType(Object value) {
+        if (value instanceof Timestamp) {
+            return TYPE.TIMESTAMP;
+        }
+        if (value instanceof BigDecimal) {
+            return TYPE.NUMBER;
+        }
+        return TYPE.STRING;
+    }
+
+    private static Object parse(TYPE type, String value) {
+        switch (type) {
+            case TIMESTAMP:
+                return Timestamp.valueOf(value);
+            case NUMBER:
+                return new BigDecimal(value);
+            default:
+                return value;
+        }
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.bulk;
+
+import com.flatide.floodgate.agent.flow.stream.LobHandle;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.util.List;
+
+/*
+    JDBC batch 대신 DB 고유의 bulk load 프로토콜로 CREATE를 수행한다
+
+    행은 appendValue()/endRow()로 텍스트 버퍼에 쌓이며, flush()에서 한번에 적재된다.
+    지원하지 않는 DBTYPE은 get()이 null을 리턴하며, 이 경우 기존 batch 방식을 사용한다.
+ */
+public abstract class BulkLoader {
+    protected final String table;
+    protected final List<String> columns;
+
+    protected final StringBuilder buffer = new StringBuilder(64 * 1024);
+    private int column = 0;
+    private int rows = 0;
+
+    protected BulkLoader(String table, List<String> columns) {
+        this.table = table;
+        this.columns = columns;
+    }
+
+    public static BulkLoader get(String dbType, String table, List<String> columns) {
+        if (dbType == null) {
+            return null;
+        }
+        switch (dbType.toUpperCase()) {
+            case "POSTGRESQL":
+            case "GREENPLUM":
+                return new BulkLoaderPostgreSQL(table, columns);
+            case "MYSQL":
+            case "MARIADB":
+                return new BulkLoaderMySql(table, columns);
+            case "H2":
+                return new BulkLoaderH2(table, columns);
+            default:
+                // Oracle, Tibero, ... : JDBC batch is already sent as array DML
+                return null;
+        }
+    }
+
+    public void appendValue(Object value) {
+        if (this.column > 0) {
+            this.buffer.append(getFieldSeparator());
+        }
+        this.column++;
+
+        if (value == null) {
+            appendNull();
+        } else {
+            appendText(format(value));
+        }
+    }
+
+    public void endRow() {
+        this.buffer.append('\n');
+        this.column = 0;
+        this.rows++;
+    }
+
+    // 버퍼에 쌓인 행의 수
+    public int size() {
+        return this.rows;
+    }
+
+    public int flush(Connection connection) throws Exception {
+        if (this.rows == 0) {
+            return 0;
+        }
+
+        int count = this.rows;
+        load(connection);
+        this.buffer.setLength(0);
+        this.rows = 0;
+        return count;
+    }
+
+    protected String getColumnList() {
+        return String.join(", ", this.columns);
+    }
+
+    protected char getFieldSeparator() {
+        return '\t';
+    }
+
+    protected String format(Object value) {
+        if (value instanceof BigDecimal) {
+            return ((BigDecimal) value).toPlainString();
+        }
+        if (value instanceof byte[] || (value instanceof LobHandle && !((LobHandle) value).isCharacter())) {
+            throw new IllegalArgumentException("Binary value is not supported by " + getClass().getSimpleName());
+        }
+        return String.valueOf(value);
+    }
+
+    // text format of COPY and LOAD DATA
+    protected void appendNull() {
+        this.buffer.append("\\N");
+    }
+
+    protected void appendText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            switch (ch) {
+                case '\\':
+                    this.buffer.append("\\\\");
+                    break;
+                case '\t':
+                    this.buffer.append("\\t");
+                    break;
+                case '\n':
+                    this.buffer.append("\\n");
+                    break;
+                case '\r':
+                    this.buffer.append("\\r");
+                    break;
+                default:
+                    this.buffer.append(ch);
+                    break;
+            }
+        }
+    }
+
+    protected abstract void load(Connection connection) throws Exception;
+}
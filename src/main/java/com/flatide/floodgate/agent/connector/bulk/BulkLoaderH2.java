@@ -0,0 +1,86 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.bulk;
+
+import java.io.File;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+/*
+    H2는 stream 적재를 지원하지 않으므로 임시 CSV 파일을 만들어 CSVREAD로 적재한다 (로컬 테스트용)
+ */
+public class BulkLoaderH2 extends BulkLoader {
+    public BulkLoaderH2(String table, List<String> columns) {
+        super(table, columns);
+    }
+
+    @Override
+    protected char getFieldSeparator() {
+        return ',';
+    }
+
+    // empty field is NULL
+    @Override
+    protected void appendNull() {
+    }
+
+    @Override
+    protected void appendText(String text) {
+        this.buffer.append('"');
+        for (int i = 0; i < text.length(); i++) {
+            char ch = text.charAt(i);
+            if (ch == '"') {
+                this.buffer.append('"');
+            }
+            this.buffer.append(ch);
+        }
+        this.buffer.append('"');
+    }
+
+    @Override
+    protected void load(Connection connection) throws Exception {
+        File file = File.createTempFile("floodgate_bulk_", ".csv");
+        try {
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(file.toPath()), StandardCharsets.UTF_8)) {
+                writer.append(this.buffer);
+            }
+
+            String path = file.getAbsolutePath().replace("'", "''");
+            String sql = "INSERT INTO " + this.table + " (" + getColumnList() + ")"
+                    + " SELECT * FROM CSVREAD('" + path + "', '" + String.join(",", this.columns) + "', 'charset=UTF-8')";
+
+            try (Statement stmt = connection.createStatement()) {
+                stmt.execute(sql);
+            }
+        } finally {
+            file.delete();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.bulk;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.List;
+
+/*
+    LOAD DATA LOCAL INFILE, 파일 대신 statement에 설정한 InputStream에서 읽는다
+
+    MySQL Connector/J(allowLoadLocalInfile=true) 또는 setLocalInfileInputStream을 제공하는 MariaDB driver가 필요하다
+ */
+public class BulkLoaderMySql extends BulkLoader {
+    private static final String[] STATEMENT_CLASSES = {
+            "com.mysql.cj.jdbc.JdbcStatement",
+            "com.mysql.jdbc.Statement",
+            "org.mariadb.jdbc.MariaDbStatement"
+    };
+
+    public BulkLoaderMySql(String table, List<String> columns) {
+        super(table, columns);
+    }
+
+    @Override
+    protected String format(Object value) {
+        if (value instanceof Boolean) {
+            return (Boolean) value ? "1" : "0";
+        }
+        return super.format(value);
+    }
+
+    @Override
+    protected void load(Connection connection) throws Exception {
+        String sql = "LOAD DATA LOCAL INFILE 'floodgate.stream' INTO TABLE " + this.table
+                + " CHARACTER SET utf8mb4"
+                + " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'"
+                + " LINES TERMINATED BY '\\n'"
+                + " (" + getColumnList() + ")";
+
+        try (Statement stmt = connection.createStatement()) {
+            Object driverStatement = null;
+            Class<?> driverClass = null;
+            for (String name : STATEMENT_CLASSES) {
+                try {
+                    Class<?> cls = Class.forName(name);
+                    if (stmt.isWrapperFor(cls)) {
+                        driverClass = cls;
+                        driverStatement = stmt.unwrap(cls);
+                        break;
+                    }
+                } catch (ClassNotFoundException e) {
+                    // try next driver
+                }
+            }
+            if (driverStatement == null) {
+                throw new IllegalStateException("LOAD DATA from stream is not supported by the driver.");
+            }
+
+            InputStream stream = new ByteArrayInputStream(this.buffer.toString().getBytes(StandardCharsets.UTF_8));
+            try {
+                driverClass.getMethod("setLocalInfileInputStream", InputStream.class).invoke(driverStatement, stream);
+            } catch (InvocationTargetException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+
+            stmt.execute(sql);
+        }
+    }
+}
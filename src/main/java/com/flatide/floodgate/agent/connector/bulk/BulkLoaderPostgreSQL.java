@@ -0,0 +1,75 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.bulk;
+
+import java.io.Reader;
+import java.io.StringReader;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.sql.Connection;
+import java.util.List;
+
+/*
+    COPY ... FROM STDIN, PostgreSQL JDBC driver의 CopyManager를 사용한다
+
+    driver는 runtime에만 존재하므로 reflection으로 호출한다
+ */
+public class BulkLoaderPostgreSQL extends BulkLoader {
+    public BulkLoaderPostgreSQL(String table, List<String> columns) {
+        super(table, columns);
+    }
+
+    @Override
+    protected String format(Object value) {
+        if (value instanceof byte[]) {
+            // bytea hex format
+            StringBuilder hex = new StringBuilder("\\x");
+            for (byte b : (byte[]) value) {
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+            }
+            return hex.toString();
+        }
+        return super.format(value);
+    }
+
+    @Override
+    protected void load(Connection connection) throws Exception {
+        String sql = "COPY " + this.table + " (" + getColumnList() + ") FROM STDIN";
+
+        Class<?> pgConnection = Class.forName("org.postgresql.PGConnection");
+        Object pg = connection.unwrap(pgConnection);
+        Object copyAPI = pgConnection.getMethod("getCopyAPI").invoke(pg);
+        Method copyIn = copyAPI.getClass().getMethod("copyIn", String.class, Reader.class);
+
+        try {
+            copyIn.invoke(copyAPI, sql, new StringReader(this.buffer.toString()));
+        } catch (InvocationTargetException e) {
+            if (e.getCause() instanceof Exception) {
+                throw (Exception) e.getCause();
+            }
+            throw e;
+        }
+    }
+}
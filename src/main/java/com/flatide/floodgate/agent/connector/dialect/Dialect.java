@@ -0,0 +1,289 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import com.flatide.floodgate.agent.connector.ConnectorTag;
+import com.flatide.floodgate.agent.flow.rule.FunctionProcessor;
+import com.flatide.floodgate.agent.flow.rule.MappingRuleItem;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    DBTYPE별 SQL 문법, 드라이버, 세션과 스트리밍 설정
+
+    커넥션을 열 때 드라이버 속성(getConnectionProperties)과 세션 SQL(getSessionSql)을 적용하고,
+    읽기 시에는 getFetchSize()로 드라이버가 결과를 한번에 메모리에 올리지 않도록 한다.
+ */
+public abstract class Dialect {
+    private static final Map<String, Dialect> dialects = new ConcurrentHashMap<>();
+
+    // DBTYPE이 없거나 등록되지 않은 경우, 기존과 같이 Oracle 문법을 사용하고 드라이버 설정은 하지 않는다
+    private static final Dialect DEFAULT = new DialectOracle(null) {
+        @Override
+        public Properties getConnectionProperties(Map connectInfo) {
+            return new Properties();
+        }
+
+        @Override
+        public int getFetchSize(int fetchSize, Map connectInfo) {
+            return fetchSize;
+        }
+
+        @Override
+        public String sample(String table, double percent) {
+            return null;
+        }
+
+        @Override
+        public Long estimateRows(Connection connection, String table) {
+            return null;
+        }
+
+        @Override
+        public Long explainRows(Connection connection, String query, List<Object> params) {
+            return null;
+        }
+    };
+
+    static {
+        register("ORACLE", new DialectOracle("oracle.jdbc.driver.OracleDriver"));
+        register("TIBERO", new DialectOracle("com.tmax.tibero.jdbc.TbDriver"));
+        register("MYSQL", new DialectMySql("com.mysql.cj.jdbc.Driver"));
+        register("MYSQL_OLD", new DialectMySql("com.mysql.jdbc.Driver"));
+        register("MARIADB", new DialectMySql("com.mysql.jdbc.Driver"));
+        register("POSTGRESQL", new DialectPostgreSQL());
+        register("GREENPLUM", new DialectPostgreSQL());
+        register("MSSQL", new DialectMSSQL());
+        register("DB2", new DialectDB2());
+    }
+
+    public static Dialect get(String dbType) {
+        Dialect dialect = find(dbType);
+        return dialect != null ? dialect : DEFAULT;
+    }
+
+    // 등록되지 않은 DBTYPE은 null
+    public static Dialect find(String dbType) {
+        if (dbType == null) {
+            return null;
+        }
+        return dialects.get(dbType.trim().toUpperCase());
+    }
+
+    public static void register(String dbType, Dialect dialect) {
+        dialects.put(dbType.toUpperCase(), dialect);
+    }
+
+    private final String driverClass;
+
+    private final FunctionProcessor functionProcessor = new FunctionProcessor() {
+        @Override
+        public Object process(MappingRuleItem item) {
+            switch (item.getSourceName()) {
+                case "TARGET_DATE":
+                    return getCurrentTimestamp();
+                default:
+                    return "?";
+            }
+        }
+    };
+
+    protected Dialect(String driverClass) {
+        this.driverClass = driverClass;
+    }
+
+    public void loadDriver() throws ClassNotFoundException {
+        if (this.driverClass != null) {
+            Class.forName(this.driverClass);
+        }
+    }
+
+    // TARGET_DATE 함수로 사용된다
+    public abstract String getCurrentTimestamp();
+
+    public FunctionProcessor getFunctionProcessor() {
+        return this.functionProcessor;
+    }
+
+    public abstract String limit(String columns, String table, int limit);
+
+    /*
+        ORDER BY, OFFSET, LIMIT을 DB에서 처리하도록 query에 붙인다, 0 이하는 사용하지 않는다
+        기본은 SQL:2008 OFFSET ... FETCH
+     */
+    public String paginate(String query, String orderBy, long offset, long limit) {
+        if (orderBy != null && !orderBy.isEmpty()) {
+            query += " ORDER BY " + orderBy;
+        }
+        if (offset > 0) {
+            query += " OFFSET " + offset + " ROWS";
+        }
+        if (limit > 0) {
+            query += " FETCH FIRST " + limit + " ROWS ONLY";
+        }
+        return query;
+    }
+
+    // SAMPLE : 테이블의 percent% 만 읽는 FROM 대상, 지원하지 않으면 null
+    public String sample(String table, double percent) {
+        return null;
+    }
+
+    /*
+        COUNT ESTIMATE : 통계 정보의 테이블 행 수, 통계가 없거나 지원하지 않으면 null
+        table은 SCHEMA.TABLE 형식일 수 있다
+     */
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        return null;
+    }
+
+    // 조건이 있는 경우 실행 계획의 예상 행 수, 지원하지 않으면 null
+    public Long explainRows(Connection connection, String query, List<Object> params) throws SQLException {
+        return null;
+    }
+
+    // 첫 행 첫 컬럼의 값, 없거나 음수(통계 없음)이면 null
+    protected static Long queryRows(Connection connection, String sql, Object... args) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement(sql)) {
+            for (int i = 0; i < args.length; i++) {
+                if (args[i] == null) {
+                    ps.setNull(i + 1, Types.VARCHAR);
+                } else {
+                    ps.setObject(i + 1, args[i]);
+                }
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long rows = rs.getLong(1);
+                    if (!rs.wasNull() && rows >= 0) {
+                        return rows;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // {schema, table}, schema가 없으면 null
+    protected static String[] splitTable(String table) {
+        int index = table.lastIndexOf('.');
+        if (index < 0) {
+            return new String[] {null, table};
+        }
+        return new String[] {table.substring(0, index), table.substring(index + 1)};
+    }
+
+    // ACTION UPSERT의 built-in template, 지원하지 않으면 null
+    public String getUpsertTemplate() {
+        return null;
+    }
+
+    // 드라이버 커넥션 속성 (statement cache, 결과 버퍼링 등)
+    public Properties getConnectionProperties(Map connectInfo) {
+        return new Properties();
+    }
+
+    protected int getStatementCacheSize(Map connectInfo) {
+        return PropertyMap.getIntegerDefault(connectInfo, ConnectorTag.STMTCACHESIZE, 256);
+    }
+
+    /*
+        PreparedStatement.setFetchSize()에 사용할 값, 0 이면 설정하지 않는다
+        fetchSize : FETCHSIZE 또는 AUTOTUNE으로 정해진 값, 없으면 0
+     */
+    public int getFetchSize(int fetchSize, Map connectInfo) {
+        return fetchSize;
+    }
+
+    // 커넥션마다 실행할 SQL, INITSQL은 ; 로 구분한다
+    public List<String> getSessionSql(Map connectInfo) {
+        List<String> sqlList = new ArrayList<>();
+        Object init = PropertyMap.get(connectInfo, ConnectorTag.INITSQL);
+        if (init instanceof List) {
+            for (Object sql : (List) init) {
+                sqlList.add(String.valueOf(sql));
+            }
+        } else if (init != null) {
+            for (String sql : String.valueOf(init).split(";")) {
+                if (!sql.trim().isEmpty()) {
+                    sqlList.add(sql.trim());
+                }
+            }
+        }
+        return sqlList;
+    }
+
+    // 여러 세션 SQL을 한번에 실행할 수 있는 하나의 문장으로 만든다
+    public String joinSessionSql(List<String> sqlList) {
+        return String.join("; ", sqlList);
+    }
+
+    // ISOLATION : READ_UNCOMMITTED, READ_COMMITTED, REPEATABLE_READ, SERIALIZABLE
+    public static int getIsolation(Map connectInfo) {
+        String isolation = PropertyMap.getString(connectInfo, ConnectorTag.ISOLATION);
+        if (isolation == null || isolation.isEmpty()) {
+            return -1;
+        }
+        switch (isolation.toUpperCase()) {
+            case "READ_UNCOMMITTED":
+                return Connection.TRANSACTION_READ_UNCOMMITTED;
+            case "READ_COMMITTED":
+                return Connection.TRANSACTION_READ_COMMITTED;
+            case "REPEATABLE_READ":
+                return Connection.TRANSACTION_REPEATABLE_READ;
+            case "SERIALIZABLE":
+                return Connection.TRANSACTION_SERIALIZABLE;
+            default:
+                throw new IllegalArgumentException("Unknown ISOLATION : " + isolation);
+        }
+    }
+
+    // 풀을 사용하지 않는 커넥션에 세션 설정을 적용한다
+    public void initSession(Connection connection, Map connectInfo) throws SQLException {
+        int isolation = getIsolation(connectInfo);
+        if (isolation >= 0) {
+            connection.setTransactionIsolation(isolation);
+        }
+        List<String> sqlList = getSessionSql(connectInfo);
+        if (!sqlList.isEmpty()) {
+            try (Statement stmt = connection.createStatement()) {
+                for (String sql : sqlList) {
+                    stmt.execute(sql);
+                }
+            }
+        }
+    }
+}
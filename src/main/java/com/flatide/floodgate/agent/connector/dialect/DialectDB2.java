@@ -0,0 +1,56 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+
+public class DialectDB2 extends Dialect {
+    public DialectDB2() {
+        super("com.ibm.db2.jcc.DB2Driver");
+    }
+
+    @Override
+    public String getCurrentTimestamp() {
+        return "CURRENT TIMESTAMP";
+    }
+
+    @Override
+    public String limit(String columns, String table, int limit) {
+        return "SELECT " + columns + " FROM " + table + " FETCH FIRST " + limit + " ROWS ONLY";
+    }
+
+    @Override
+    public String sample(String table, double percent) {
+        return table + " TABLESAMPLE SYSTEM (" + percent + ")";
+    }
+
+    // RUNSTATS 전에는 CARD가 -1 이다
+    @Override
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        String[] name = splitTable(table.toUpperCase());
+        return queryRows(connection, "SELECT CARD FROM SYSCAT.TABLES WHERE TABSCHEMA = COALESCE(?, CURRENT SCHEMA) AND TABNAME = ?", name[0], name[1]);
+    }
+}
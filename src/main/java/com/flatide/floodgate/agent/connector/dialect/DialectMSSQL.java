@@ -0,0 +1,91 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Map;
+import java.util.Properties;
+
+public class DialectMSSQL extends Dialect {
+    public DialectMSSQL() {
+        super("com.microsoft.sqlserver.jdbc.SQLServerDriver");
+    }
+
+    @Override
+    public String getCurrentTimestamp() {
+        return "getDate()";
+    }
+
+    @Override
+    public String limit(String columns, String table, int limit) {
+        return "SELECT TOP " + limit + " " + columns + " FROM " + table;
+    }
+
+    // OFFSET ... FETCH는 ORDER BY가 있어야 한다
+    @Override
+    public String paginate(String query, String orderBy, long offset, long limit) {
+        if (offset <= 0 && limit <= 0) {
+            return super.paginate(query, orderBy, offset, limit);
+        }
+        if (orderBy == null || orderBy.isEmpty()) {
+            orderBy = "(SELECT NULL)";
+        }
+        query += " ORDER BY " + orderBy + " OFFSET " + Math.max(offset, 0) + " ROWS";
+        if (limit > 0) {
+            query += " FETCH NEXT " + limit + " ROWS ONLY";
+        }
+        return query;
+    }
+
+    @Override
+    public String sample(String table, double percent) {
+        return table + " TABLESAMPLE (" + percent + " PERCENT)";
+    }
+
+    // heap 또는 clustered index의 partition 행 수
+    @Override
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        return queryRows(connection, "SELECT SUM(rows) FROM sys.partitions WHERE object_id = OBJECT_ID(?) AND index_id IN (0, 1)", table);
+    }
+
+    @Override
+    public String getUpsertTemplate() {
+        return "UPSERT_MSSQL";
+    }
+
+    // adaptive : 결과를 필요한 만큼만 버퍼링한다
+    @Override
+    public Properties getConnectionProperties(Map connectInfo) {
+        Properties properties = super.getConnectionProperties(connectInfo);
+        properties.setProperty("responseBuffering", "adaptive");
+        int size = getStatementCacheSize(connectInfo);
+        if (size > 0) {
+            properties.setProperty("disableStatementPooling", "false");
+            properties.setProperty("statementPoolingCacheSize", String.valueOf(size));
+        }
+        return properties;
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import com.flatide.floodgate.agent.connector.ConnectorTag;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import com.flatide.floodgate.agent.connector.BoundSql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/*
+    MySQL, MariaDB
+
+    Connector/J는 기본적으로 결과 전체를 메모리에 읽는다.
+    URL에 useCursorFetch=true가 있으면 server cursor로 fetchSize씩 읽고,
+    그렇지 않으면 Integer.MIN_VALUE로 행 단위 streaming 한다.
+ */
+public class DialectMySql extends Dialect {
+    public DialectMySql(String driverClass) {
+        super(driverClass);
+    }
+
+    @Override
+    public String getCurrentTimestamp() {
+        return "now()";
+    }
+
+    @Override
+    public String limit(String columns, String table, int limit) {
+        return "SELECT " + columns + " FROM " + table + " LIMIT " + limit;
+    }
+
+    @Override
+    public String paginate(String query, String orderBy, long offset, long limit) {
+        if (orderBy != null && !orderBy.isEmpty()) {
+            query += " ORDER BY " + orderBy;
+        }
+        if (limit > 0) {
+            query += " LIMIT " + limit;
+        } else if (offset > 0) {
+            // OFFSET만 사용할 수는 없다
+            query += " LIMIT 18446744073709551615";
+        }
+        if (offset > 0) {
+            query += " OFFSET " + offset;
+        }
+        return query;
+    }
+
+    // TABLESAMPLE이 없으므로 행 단위로 거른다
+    @Override
+    public String sample(String table, double percent) {
+        return "(SELECT * FROM " + table + " WHERE RAND() < " + (percent / 100) + ") S";
+    }
+
+    // InnoDB의 TABLE_ROWS는 표본 추정치이다
+    @Override
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        String[] name = splitTable(table);
+        return queryRows(connection, "SELECT TABLE_ROWS FROM information_schema.TABLES WHERE TABLE_SCHEMA = COALESCE(?, DATABASE()) AND TABLE_NAME = ?", name[0], name[1]);
+    }
+
+    // 첫 번째 접근 테이블의 rows * filtered
+    @Override
+    public Long explainRows(Connection connection, String query, List<Object> params) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN " + query)) {
+            BoundSql.bind(ps, 1, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    long rows = rs.getLong("rows");
+                    if (rs.wasNull()) {
+                        return null;
+                    }
+                    double filtered = 100;
+                    try {
+                        filtered = rs.getDouble("filtered");
+                    } catch (SQLException e) {
+                        // filtered 컬럼이 없는 이전 버전
+                    }
+                    return (long) (rows * filtered / 100);
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getUpsertTemplate() {
+        return "UPSERT_MYSQL";
+    }
+
+    @Override
+    public Properties getConnectionProperties(Map connectInfo) {
+        Properties properties = super.getConnectionProperties(connectInfo);
+        int size = getStatementCacheSize(connectInfo);
+        if (size > 0) {
+            properties.setProperty("cachePrepStmts", "true");
+            properties.setProperty("prepStmtCacheSize", String.valueOf(size));
+            properties.setProperty("prepStmtCacheSqlLimit", "4096");
+        }
+        return properties;
+    }
+
+    @Override
+    public int getFetchSize(int fetchSize, Map connectInfo) {
+        String url = PropertyMap.getStringDefault(connectInfo, ConnectorTag.URL, "");
+        if (fetchSize > 0 && url.contains("useCursorFetch=true")) {
+            return fetchSize;
+        }
+        return Integer.MIN_VALUE;
+    }
+}
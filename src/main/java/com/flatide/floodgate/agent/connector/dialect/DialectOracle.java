@@ -0,0 +1,144 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import com.flatide.floodgate.agent.connector.ConnectorTag;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+// Oracle, Tibero
+public class DialectOracle extends Dialect {
+    // 드라이버 기본 prefetch(10행)는 대량 조회시 round trip이 너무 많다
+    private static final int DEFAULT_PREFETCH = 500;
+
+    public DialectOracle(String driverClass) {
+        super(driverClass);
+    }
+
+    @Override
+    public String getCurrentTimestamp() {
+        return "sysdate";
+    }
+
+    @Override
+    public String limit(String columns, String table, int limit) {
+        return "SELECT " + columns + " FROM " + table + " WHERE ROWNUM <= " + limit;
+    }
+
+    // OFFSET이 없으면 12c 이전 버전과 Tibero에서도 사용할 수 있도록 ROWNUM을 사용한다
+    @Override
+    public String paginate(String query, String orderBy, long offset, long limit) {
+        if (offset > 0 || limit <= 0) {
+            return super.paginate(query, orderBy, offset, limit);
+        }
+        if (orderBy != null && !orderBy.isEmpty()) {
+            query += " ORDER BY " + orderBy;
+        }
+        return "SELECT * FROM (" + query + ") WHERE ROWNUM <= " + limit;
+    }
+
+    @Override
+    public String sample(String table, double percent) {
+        return table + " SAMPLE (" + percent + ")";
+    }
+
+    @Override
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        String[] name = splitTable(table.toUpperCase());
+        return queryRows(connection, "SELECT NUM_ROWS FROM ALL_TABLES WHERE OWNER = NVL(?, USER) AND TABLE_NAME = ?", name[0], name[1]);
+    }
+
+    // EXPLAIN PLAN에는 값을 바인딩할 수 없으므로 파라미터가 없는 경우만 사용한다
+    @Override
+    public Long explainRows(Connection connection, String query, List<Object> params) throws SQLException {
+        if (!params.isEmpty()) {
+            return null;
+        }
+        String id = "FLOODGATE_" + Long.toHexString(System.nanoTime());
+        try (Statement stmt = connection.createStatement()) {
+            stmt.execute("EXPLAIN PLAN SET STATEMENT_ID = '" + id + "' FOR " + query);
+            try {
+                return queryRows(connection, "SELECT CARDINALITY FROM PLAN_TABLE WHERE STATEMENT_ID = ? AND ID = 0", id);
+            } finally {
+                stmt.execute("DELETE FROM PLAN_TABLE WHERE STATEMENT_ID = '" + id + "'");
+            }
+        }
+    }
+
+    @Override
+    public String getUpsertTemplate() {
+        return "UPSERT_ORACLE";
+    }
+
+    @Override
+    public Properties getConnectionProperties(Map connectInfo) {
+        Properties properties = super.getConnectionProperties(connectInfo);
+        int size = getStatementCacheSize(connectInfo);
+        if (size > 0) {
+            properties.setProperty("oracle.jdbc.implicitStatementCacheSize", String.valueOf(size));
+        }
+        properties.setProperty("defaultRowPrefetch", String.valueOf(DEFAULT_PREFETCH));
+        return properties;
+    }
+
+    @Override
+    public int getFetchSize(int fetchSize, Map connectInfo) {
+        return fetchSize > 0 ? fetchSize : DEFAULT_PREFETCH;
+    }
+
+    /*
+        NLS : {"NLS_DATE_FORMAT": "YYYY-MM-DD HH24:MI:SS", ...}
+        하나의 ALTER SESSION으로 만들어 풀의 connectionInitSql로도 사용할 수 있도록 한다
+     */
+    @Override
+    public List<String> getSessionSql(Map connectInfo) {
+        List<String> sqlList = super.getSessionSql(connectInfo);
+        Map nls = (Map) PropertyMap.get(connectInfo, ConnectorTag.NLS);
+        if (nls != null && !nls.isEmpty()) {
+            StringBuilder builder = new StringBuilder("ALTER SESSION SET");
+            for (Object o : nls.entrySet()) {
+                Map.Entry entry = (Map.Entry) o;
+                builder.append(' ').append(entry.getKey()).append(" = '").append(String.valueOf(entry.getValue()).replace("'", "''")).append('\'');
+            }
+            sqlList.add(0, builder.toString());
+        }
+        return sqlList;
+    }
+
+    @Override
+    public String joinSessionSql(List<String> sqlList) {
+        StringBuilder builder = new StringBuilder("BEGIN ");
+        for (String sql : sqlList) {
+            builder.append("EXECUTE IMMEDIATE '").append(sql.replace("'", "''")).append("'; ");
+        }
+        return builder.append("END;").toString();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.connector.dialect;
+
+import com.flatide.floodgate.agent.connector.BoundSql;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/*
+    PostgreSQL, Greenplum
+
+    autocommit이 꺼져 있고 fetchSize가 0보다 큰 경우에만 cursor로 나누어 읽는다
+ */
+public class DialectPostgreSQL extends Dialect {
+    private static final int DEFAULT_FETCH = 1000;
+
+    private static final Pattern PLAN_ROWS = Pattern.compile("\"Plan Rows\"\\s*:\\s*(\\d+)");
+
+    public DialectPostgreSQL() {
+        super("org.postgresql.Driver");
+    }
+
+    @Override
+    public String getCurrentTimestamp() {
+        return "now()";
+    }
+
+    @Override
+    public String limit(String columns, String table, int limit) {
+        return "SELECT " + columns + " FROM " + table + " LIMIT " + limit;
+    }
+
+    @Override
+    public String paginate(String query, String orderBy, long offset, long limit) {
+        if (orderBy != null && !orderBy.isEmpty()) {
+            query += " ORDER BY " + orderBy;
+        }
+        if (limit > 0) {
+            query += " LIMIT " + limit;
+        }
+        if (offset > 0) {
+            query += " OFFSET " + offset;
+        }
+        return query;
+    }
+
+    @Override
+    public String sample(String table, double percent) {
+        return table + " TABLESAMPLE SYSTEM (" + percent + ")";
+    }
+
+    // to_regclass는 테이블이 없어도 오류 없이 null이므로 트랜잭션이 중단되지 않는다
+    @Override
+    public Long estimateRows(Connection connection, String table) throws SQLException {
+        return queryRows(connection, "SELECT reltuples::bigint FROM pg_class WHERE oid = to_regclass(?)", table);
+    }
+
+    // 최상위 plan node의 Plan Rows
+    @Override
+    public Long explainRows(Connection connection, String query, List<Object> params) throws SQLException {
+        try (PreparedStatement ps = connection.prepareStatement("EXPLAIN (FORMAT JSON) " + query)) {
+            BoundSql.bind(ps, 1, params);
+            try (ResultSet rs = ps.executeQuery()) {
+                if (rs.next()) {
+                    Matcher matcher = PLAN_ROWS.matcher(rs.getString(1));
+                    if (matcher.find()) {
+                        return Long.parseLong(matcher.group(1));
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    @Override
+    public String getUpsertTemplate() {
+        return "UPSERT_POSTGRESQL";
+    }
+
+    @Override
+    public Properties getConnectionProperties(Map connectInfo) {
+        Properties properties = super.getConnectionProperties(connectInfo);
+        int size = getStatementCacheSize(connectInfo);
+        if (size > 0) {
+            properties.setProperty("preparedStatementCacheQueries", String.valueOf(size));
+        }
+        return properties;
+    }
+
+    @Override
+    public int getFetchSize(int fetchSize, Map connectInfo) {
+        return fetchSize > 0 ? fetchSize : DEFAULT_FETCH;
+    }
+}
@@ -26,17 +26,25 @@ package com.flatide.floodgate.agent.flow;
 
 import com.flatide.floodgate.agent.Context;
 import com.flatide.floodgate.agent.Context.CONTEXT_KEY;
+import com.flatide.floodgate.agent.connector.DirectExport;
+import com.flatide.floodgate.agent.connector.SqlPushdown;
+import com.flatide.floodgate.agent.connector.Watermark;
 import com.flatide.floodgate.agent.flow.stream.FGInputStream;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
 import com.flatide.floodgate.system.utils.PropertyMap;
 import com.flatide.floodgate.agent.flow.module.Module;
-import com.flatide.floodgate.agent.flow.rule.MappingRule;
 
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
+import java.util.concurrent.ThreadLocalRandom;
 
 public class Flow {
+    private static final int DEFAULT_PIPE_DEPTH = 0;
+
+    private FlowPlan plan;
+
     private final Context channelContext;
     protected FlowContext context;
 
@@ -79,9 +87,7 @@ public class Flow {
     }
 
     public Flow(String targetId, Context context) {
-        UUID id = UUID.randomUUID();
-
-        this.flowId = id.toString();
+        this.flowId = newId();
         this.targetId = targetId;
 
         this.channelContext = context;
@@ -94,78 +100,113 @@ public class Flow {
         this.channelContext = context;
     }
     
-    public void prepare(Map<String, Object> flowInfo, FGInputStream input) {
-        this.context = new FlowContext(this.flowId, flowInfo);
+    public void prepare(Map<String, Object> flowInfo, FGInputStream input) throws Exception {
+        prepare(FlowPlan.compile(flowInfo), input);
+    }
+
+    // 실행 상태(FlowContext, Module)만 새로 만든다
+    public void prepare(FlowPlan plan, FGInputStream input) {
+        this.plan = plan;
+        this.context = new FlowContext(this.flowId, plan.getSource());
         this.context.setCurrent(input);
 
         String method = channelContext.getString(Context.CONTEXT_KEY.HTTP_REQUEST_METHOD);
-        Object entryMap = flowInfo.get(FlowTag.ENTRY.name());
-        if( entryMap instanceof Map) {
-            entryMap = (String)((Map<String, String>)entryMap).get(method);
-        }
-        this.context.setEntry((String) entryMap);
+        this.context.setEntry(plan.getEntry(method));
 
-        this.context.setDebug((Boolean) flowInfo.get(FlowTag.DEBUG.name()));
+        this.context.setDebug(plan.getDebug());
         this.context.add(CONTEXT_KEY.CHANNEL_CONTEXT, channelContext);
 
         // Module
-        @SuppressWarnings("unchecked")
-        Map<String, Map<String, Object>> mods = (Map<String, Map<String, Object>>) flowInfo.get(FlowTag.MODULE.name());
-        if (mods != null) {
-            for( Map.Entry<String, Map<String, Object>> entry : mods.entrySet() ) {
-                Module module = new Module( this, entry.getKey(), entry.getValue());
-                this.context.getModules().put( entry.getKey(), module);
+        for (Map.Entry<String, Map<String, Object>> entry : plan.getModules().entrySet()) {
+            Module module = new Module(this, entry.getKey(), entry.getValue());
+            if (plan.getGraph() != null) {
+                // PIPE 대상 module도 FlowContext의 current를 사용하지 않는다
+                module.setGraphInput(null);
             }
+            this.context.getModules().put(entry.getKey(), module);
         }
 
-        // Connect Info
-        /*HashMap<String, Object> connectInfoData = (HashMap) meta.get(FlowTag.CONNECT.name());
-        if( connectInfoData != null ) {
-            this.connectInfo = new ConnectInfo(connectInfoData);
-        }*/
-
-        // Rule
-        @SuppressWarnings("unchecked")
-        Map<String, Object> mappingData = (Map<String, Object>) flowInfo.get(FlowTag.RULE.name());
-        //HashMap<String, Object> mappingData = (HashMap) meta.get(FlowTag.RULE.name());
-        if( mappingData != null ) {
-            for( Map.Entry<String, Object> entry : mappingData.entrySet() ) {
-                MappingRule rule = new MappingRule();
-                @SuppressWarnings("unchecked")
-                Map<String, String> temp = (Map<String, String>) entry.getValue();
-                rule.addRule( temp );
-                this.context.getRules().put( entry.getKey(), rule );
-            }
-        }
+        // Rule, module이 실행할 때 복사해서 사용한다
+        this.context.getRules().putAll(plan.getRules());
+    }
+
+    // UUID.randomUUID()는 SecureRandom을 사용하므로 요청마다 만들기에는 비싸다, 식별용으로만 사용한다
+    public static String newId() {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long most = (random.nextLong() & ~0xF000L) | 0x4000L;
+        long least = (random.nextLong() & 0x3FFFFFFFFFFFFFFFL) | 0x8000000000000000L;
+        return new UUID(most, least).toString();
     }
 
     public FGInputStream process() throws Exception {
-        String entry = context.getString("CHANNEL_CONTEXT.REQUEST_PARAMS.entry");
-        if( entry == null || entry.isEmpty() ) {
-            entry = context.getEntry();
+        FlowGraph graph = this.plan.getGraph();
+        if (graph != null) {
+            // DEPENDS에 따라 독립적인 module들을 동시에 실행한다
+            graph.run(this, this.context, this.plan.getConcurrency());
+        } else {
+            String entry = context.getString("CHANNEL_CONTEXT.REQUEST_PARAMS.entry");
+            if( entry == null || entry.isEmpty() ) {
+                entry = context.getEntry();
+            }
+
+            this.context.setNext(entry);
+            while( this.context.hasNext()  ) {
+                execute(this.context.next());
+            }
         }
-        
-        this.context.setNext(entry);
-        while( this.context.hasNext()  ) {
-            Module module = this.context.next();
-            Module joinModule = null;
 
-            try {
-                module.processBefore(this, context);
-                
-                String joinTarget = PropertyMap.getStringDefault(module.getSequences(), FlowTag.PIPE, "");
-                if (!joinTarget.isEmpty()) {
-                    this.context.setNext(joinTarget);
-                    if (this.context.hasNext()) {
-                        joinModule = this.context.next();
-                        joinModule.processBefore(this, context);
-                    } else {
+        // 모든 module이 성공한 경우에만 다음 조회 위치를 저장한다
+        for (Watermark watermark : this.context.getWatermarks()) {
+            watermark.save();
+        }
+
+        return context.getCurrent();
+    }
+
+    // module을 실행한다, PIPE인 경우 대상 module들도 함께 실행한다
+    void execute(Module module) throws Exception {
+        List<Module> joinModules = new ArrayList<>();
+
+        try {
+            List<String> joinTargets = FlowGraph.getNames(module.getSequences(), FlowTag.PIPE);
+            Module pipeTarget = joinTargets.size() == 1 ? this.context.getModules().get(joinTargets.get(0)) : null;
+            boolean pushdown = pipeTarget != null && SqlPushdown.isApplicable(module, pipeTarget, this.context);
+            module.setPushdown(pushdown);
+            boolean export = !pushdown && pipeTarget != null && DirectExport.isApplicable(module, pipeTarget, this.context);
+            // PIPEDEPTH : source와 sink 사이에 대기할 수 있는 batch 수, 없거나 0 이면 한 쓰레드에서 번갈아 실행한다
+            int pipeDepth = PropertyMap.getIntegerDefault(module.getSequences(), FlowTag.PIPEDEPTH, DEFAULT_PIPE_DEPTH);
+            // Pipeline을 사용할 때만 LOB을 읽어 둔다
+            // source는 sink가 이전 batch를 쓰는 동안 다음 batch를 읽고, 여러 sink는 같은 LOB을 동시에 읽을 수 없다
+            module.setMaterializeLob(joinTargets.size() > 1 || (!pushdown && pipeTarget != null && pipeDepth > 0));
+
+            module.processBefore(this, context);
+
+            if (!joinTargets.isEmpty()) {
+                for (String joinTarget : joinTargets) {
+                    Module joinModule = this.context.getModules().get(joinTarget);
+                    if (joinModule == null) {
                         throw new Exception("Cannot find target module to pipe with.");
                     }
-
+                    joinModules.add(joinModule);
+                    joinModule.processBefore(this, context);
+                }
+                Module joinModule = joinModules.get(0);
+
+                if (pushdown) {
+                    // 같은 datasource인 경우 DB 안에서 INSERT ... SELECT로 처리한다
+                    joinModule.processPushdown(this, context, module);
+                } else if (export && joinModule.processExport(this, context, module)) {
+                    // FILE, FTP, SFTP로 바로 인코딩하여 썼다
+                } else if (joinModules.size() > 1) {
+                    // 한번 읽어서 여러 sink에 동시에 쓴다, 각 sink는 PIPEDEPTH 만큼 뒤처질 수 있다
+                    new Pipeline(this, context, module, joinModules, Math.max(pipeDepth, 1)).run();
+                } else if (pipeDepth > 0) {
+                    // source와 sink를 별도 쓰레드에서 실행하여 읽기와 쓰기를 겹친다
+                    new Pipeline(this, context, module, joinModules, pipeDepth).run();
+                } else {
                     boolean complete = false;
-                    
-                    List<Map> buffer = new ArrayList<>();
+
+                    List<Map> buffer = new RecordBatch();
                     while (!complete) {
                         //List part = module.processPartially(this, context, null);
                         module.processPartially(this, context, buffer);
@@ -173,24 +214,39 @@ public class Flow {
                             complete = true;
                         }
                         joinModule.processPartially(this, context, buffer);
+                        // 다음 읽기를 위해 비운다, 행을 소비하지 않는 connector도 있다
+                        buffer.clear();
                     }
-                } else {
-                    module.process(this, context);
                 }
-            } catch (Exception e) {
-                e.printStackTrace();
-                throw e;
+            } else {
+                module.process(this, context);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            throw e;
+        } finally {
+            try {
+                module.processAfter(this, context);
             } finally {
-                try {
-                    module.processAfter(this, context);
-                } finally {
-                    if (joinModule != null) {
-                        joinModule.processAfter(this, context);
-                    }
-                }
+                processAfter(joinModules);
             }
         }
+    }
 
-        return context.getCurrent();
+    // 각 sink는 자신의 connection으로 commit하므로 하나가 실패해도 나머지는 처리한다
+    private void processAfter(List<Module> modules) throws Exception {
+        Exception error = null;
+        for (Module module : modules) {
+            try {
+                module.processAfter(this, context);
+            } catch (Exception e) {
+                if (error == null) {
+                    error = e;
+                }
+            }
+        }
+        if (error != null) {
+            throw error;
+        }
     }
 }
@@ -25,12 +25,16 @@
 package com.flatide.floodgate.agent.flow;
 
 import com.flatide.floodgate.agent.Context;
+import com.flatide.floodgate.agent.connector.Watermark;
 import com.flatide.floodgate.agent.flow.stream.FGInputStream;
 import com.flatide.floodgate.agent.flow.stream.Payload;
 import com.flatide.floodgate.agent.flow.module.Module;
 import com.flatide.floodgate.agent.flow.rule.MappingRule;
 
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
 public class FlowContext extends Context {
@@ -48,11 +52,14 @@ public class FlowContext extends Context {
     Module currentModule = null;
     Module nextModule = null;
 
-    // Input Data
-    FGInputStream current;
+    // Input Data, DEPENDS로 실행되는 경우 module들은 사용하지 않는다
+    volatile FGInputStream current;
 
     Payload payload;
 
+    // flow가 성공한 후에 저장할 증분 조회 위치, DEPENDS로 실행되는 module들이 동시에 추가할 수 있다
+    List<Watermark> watermarks = Collections.synchronizedList(new ArrayList<>());
+
     public FlowContext(String id, Map<String, Object> flowData) {
         this.id = id;
         super.add("FLOW", flowData);
@@ -67,6 +74,14 @@ public class FlowContext extends Context {
         this.id = id;
     }
 
+    public List<Watermark> getWatermarks() {
+        return watermarks;
+    }
+
+    public void addWatermark(Watermark watermark) {
+        this.watermarks.add(watermark);
+    }
+
     public String getEntry() {
         return entry;
     }
@@ -0,0 +1,248 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow;
+
+import com.flatide.floodgate.agent.flow.module.Module;
+import com.flatide.floodgate.agent.flow.stream.FGInputStream;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/*
+    module의 DEPENDS로 정의된 의존 관계(DAG)에 따라 module을 실행한다
+
+    DEPENDS : "MODULE" 또는 ["MODULE1", "MODULE2", ...], 모두 성공한 후에 실행된다
+    선행 module이 모두 끝난 module들은 최대 CONCURRENCY 개의 쓰레드에서 동시에 실행된다.
+    PIPE 대상 module은 source와 함께 실행되므로 graph에 포함하지 않으며, ENTRY와 CALL은 사용하지 않는다.
+
+    module들은 FlowContext의 current를 공유하지 않고 각자의 입력을 가진다.
+    선행 module이 없으면 flow의 입력을, 있으면 첫번째 DEPENDS module의 출력(BYPASS 결과 등)을 입력으로 받는다.
+    flow의 결과는 flow의 RESULT에 지정한 module의 출력이며, 없으면 후행 module이 없는 module이 하나인 경우 그 출력이다.
+
+    module이 실패하면 새로운 module은 시작하지 않고, 실행중인 module이 끝나기를 기다린 후 첫번째 오류를 던진다.
+ */
+public class FlowGraph {
+    private static final int DEFAULT_CONCURRENCY = 4;
+
+    // module -> 선행 module들
+    private final Map<String, List<String>> upstreams = new HashMap<>();
+    // module -> 후행 module들
+    private final Map<String, List<String>> downstreams = new HashMap<>();
+
+    // flow의 결과를 출력하는 module, 없으면 null
+    private String result = null;
+
+    private FlowGraph() {
+    }
+
+    /*
+        modules : module 이름 -> sequences
+        result : flow의 RESULT
+        DEPENDS가 있는 module이 하나도 없으면 null
+     */
+    public static FlowGraph build(Map<String, Map<String, Object>> modules, String result) throws Exception {
+        boolean depends = false;
+        Set<String> sinks = new HashSet<>();
+        for (Map<String, Object> sequences : modules.values()) {
+            sinks.addAll(getNames(sequences, FlowTag.PIPE));
+            depends |= PropertyMap.get(sequences, FlowTag.DEPENDS) != null;
+        }
+        if (!depends) {
+            return null;
+        }
+
+        FlowGraph graph = new FlowGraph();
+        for (String name : modules.keySet()) {
+            if (sinks.contains(name)) {
+                continue;
+            }
+            graph.upstreams.put(name, new ArrayList<>());
+            graph.downstreams.put(name, new ArrayList<>());
+        }
+
+        for (String name : graph.upstreams.keySet()) {
+            for (String upstream : getNames(modules.get(name), FlowTag.DEPENDS)) {
+                if (!graph.upstreams.containsKey(upstream)) {
+                    throw new Exception("Cannot find module " + upstream + " in DEPENDS of " + name + ".");
+                }
+                graph.upstreams.get(name).add(upstream);
+                graph.downstreams.get(upstream).add(name);
+            }
+        }
+
+        graph.checkCycle();
+
+        if (result != null && !result.isEmpty()) {
+            if (!graph.upstreams.containsKey(result)) {
+                throw new Exception("Cannot find module " + result + " in RESULT of flow.");
+            }
+            graph.result = result;
+        } else {
+            List<String> terminals = new ArrayList<>();
+            for (Map.Entry<String, List<String>> entry : graph.downstreams.entrySet()) {
+                if (entry.getValue().isEmpty()) {
+                    terminals.add(entry.getKey());
+                }
+            }
+            if (terminals.size() == 1) {
+                graph.result = terminals.get(0);
+            }
+        }
+        return graph;
+    }
+
+    // "MODULE" 또는 ["MODULE1", "MODULE2", ...]
+    static List<String> getNames(Map sequences, FlowTag tag) {
+        List<String> names = new ArrayList<>();
+        Object value = PropertyMap.get(sequences, tag);
+        if (value instanceof List) {
+            for (Object name : (List) value) {
+                names.add(String.valueOf(name));
+            }
+        } else if (value != null && !String.valueOf(value).isEmpty()) {
+            names.add(String.valueOf(value));
+        }
+        return names;
+    }
+
+    private void checkCycle() throws Exception {
+        Map<String, Integer> remains = new HashMap<>();
+        List<String> ready = new ArrayList<>();
+        for (Map.Entry<String, List<String>> entry : this.upstreams.entrySet()) {
+            remains.put(entry.getKey(), entry.getValue().size());
+            if (entry.getValue().isEmpty()) {
+                ready.add(entry.getKey());
+            }
+        }
+
+        int visited = 0;
+        while (!ready.isEmpty()) {
+            String name = ready.remove(ready.size() - 1);
+            visited++;
+            for (String downstream : this.downstreams.get(name)) {
+                if (remains.merge(downstream, -1, Integer::sum) == 0) {
+                    ready.add(downstream);
+                }
+            }
+        }
+
+        if (visited < this.upstreams.size()) {
+            throw new Exception("DEPENDS of modules has a cycle.");
+        }
+    }
+
+    // flow의 결과를 리턴한다
+    public FGInputStream run(Flow flow, FlowContext context, int concurrency) throws Exception {
+        if (concurrency <= 0) {
+            concurrency = DEFAULT_CONCURRENCY;
+        }
+
+        AtomicInteger count = new AtomicInteger(0);
+        String prefix = "floodgate-flow-" + flow.getFlowId() + "-";
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(concurrency, Math.max(this.upstreams.size(), 1)), r -> {
+            Thread thread = new Thread(r, prefix + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        ExecutorCompletionService<String> completion = new ExecutorCompletionService<>(executor);
+
+        Map<String, Integer> remains = new HashMap<>();
+        for (Map.Entry<String, List<String>> entry : this.upstreams.entrySet()) {
+            remains.put(entry.getKey(), entry.getValue().size());
+        }
+
+        // module들이 current를 바꾸기 전의 flow 입력
+        FGInputStream input = context.getCurrent();
+
+        Exception error = null;
+        int running = 0;
+        try {
+            for (Map.Entry<String, Integer> entry : remains.entrySet()) {
+                if (entry.getValue() == 0) {
+                    submit(completion, flow, context, entry.getKey(), input);
+                    running++;
+                }
+            }
+
+            while (running > 0) {
+                Future<String> done = completion.take();
+                running--;
+
+                String name;
+                try {
+                    name = done.get();
+                } catch (ExecutionException e) {
+                    if (error == null) {
+                        error = e.getCause() instanceof Exception ? (Exception) e.getCause() : e;
+                    }
+                    continue;
+                }
+
+                // 실패한 후에는 새로 시작하지 않는다
+                if (error != null) {
+                    continue;
+                }
+                for (String downstream : this.downstreams.get(name)) {
+                    if (remains.merge(downstream, -1, Integer::sum) == 0) {
+                        submit(completion, flow, context, downstream, input);
+                        running++;
+                    }
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+
+        if (error != null) {
+            throw error;
+        }
+
+        FGInputStream output = this.result != null ? context.getModules().get(this.result).getGraphOutput() : null;
+        context.setCurrent(output);
+        return output;
+    }
+
+    // 선행 module은 모두 끝났으므로 그 출력을 입력으로 정할 수 있다
+    private void submit(ExecutorCompletionService<String> completion, Flow flow, FlowContext context, String name, FGInputStream input) {
+        Module module = context.getModules().get(name);
+        List<String> upstreams = this.upstreams.get(name);
+        module.setGraphInput(upstreams.isEmpty() ? input : context.getModules().get(upstreams.get(0)).getGraphOutput());
+        completion.submit(() -> {
+            flow.execute(module);
+            return name;
+        });
+    }
+}
@@ -0,0 +1,154 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow;
+
+import com.flatide.floodgate.agent.flow.rule.MappingRule;
+import com.flatide.floodgate.agent.meta.MetaManager;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/*
+    flow meta를 한번만 해석한 실행 계획, 요청마다 공유하므로 만든 후에는 변경하지 않는다
+
+    요청마다 새로 만드는 것은 Flow, FlowContext, Module 같은 실행 상태뿐이며
+    MappingRule은 module이 실행할 때 복사해서 사용한다.
+    flow ID와 meta의 version으로 찾으며 version이 같으면 meta를 다시 읽지 않는다.
+    version이 바뀌면 다시 컴파일하여 교체하고, 실행중인 flow는 이전 계획으로 끝난다.
+ */
+public final class FlowPlan {
+    private static final Map<String, FlowPlan> plans = new ConcurrentHashMap<>();
+
+    // meta의 DATA
+    private final Map<String, Object> source;
+    // 컴파일할 때의 meta version, 알 수 없으면 null
+    private final Object version;
+
+    private final Object entry;
+    private final Boolean debug;
+    private final int concurrency;
+
+    // module 이름 -> sequences
+    private final Map<String, Map<String, Object>> modules;
+    private final Map<String, MappingRule> rules;
+
+    // DEPENDS가 없으면 null
+    private final FlowGraph graph;
+
+    @SuppressWarnings("unchecked")
+    private FlowPlan(Map<String, Object> flowInfo, Object version) throws Exception {
+        this.source = flowInfo;
+        this.version = version;
+
+        this.entry = flowInfo.get(FlowTag.ENTRY.name());
+        this.debug = (Boolean) flowInfo.get(FlowTag.DEBUG.name());
+        this.concurrency = PropertyMap.getIntegerDefault(flowInfo, FlowTag.CONCURRENCY, 0);
+
+        Map<String, Map<String, Object>> mods = (Map<String, Map<String, Object>>) flowInfo.get(FlowTag.MODULE.name());
+        this.modules = mods == null ? Collections.emptyMap() : Collections.unmodifiableMap(new LinkedHashMap<>(mods));
+
+        Map<String, MappingRule> ruleMap = new HashMap<>();
+        Map<String, Object> mappingData = (Map<String, Object>) flowInfo.get(FlowTag.RULE.name());
+        if (mappingData != null) {
+            for (Map.Entry<String, Object> entry : mappingData.entrySet()) {
+                MappingRule rule = new MappingRule();
+                rule.addRule((Map<String, String>) entry.getValue());
+                ruleMap.put(entry.getKey(), rule);
+            }
+        }
+        this.rules = Collections.unmodifiableMap(ruleMap);
+
+        this.graph = FlowGraph.build(this.modules, PropertyMap.getString(flowInfo, FlowTag.RESULT));
+    }
+
+    public static FlowPlan compile(Map<String, Object> flowInfo) throws Exception {
+        return new FlowPlan(flowInfo, null);
+    }
+
+    // flowId의 계획, 없거나 meta의 version이 바뀐 경우에만 meta를 읽어 다시 컴파일한다
+    @SuppressWarnings("unchecked")
+    public static FlowPlan get(String tableName, String flowId) throws Exception {
+        Object version = MetaManager.shared().getVersion(tableName, flowId);
+        FlowPlan plan = plans.get(flowId);
+        if (plan != null && version != null && version.equals(plan.version)) {
+            return plan;
+        }
+
+        Map<String, Object> flowMeta = MetaManager.shared().read(tableName, flowId);
+        if (flowMeta == null) {
+            throw new IllegalArgumentException("Cannot find flow " + flowId + ".");
+        }
+        FlowPlan compiled = new FlowPlan((Map<String, Object>) flowMeta.get("DATA"), version);
+        if (version == null) {
+            return compiled;
+        }
+        // 동시에 컴파일한 경우 먼저 교체된 같은 version의 계획을 사용한다
+        return plans.compute(flowId, (k, old) -> old != null && version.equals(old.version) ? old : compiled);
+    }
+
+    public static void invalidate(String flowId) {
+        plans.remove(flowId);
+    }
+
+    public static void clear() {
+        plans.clear();
+    }
+
+    public Map<String, Object> getSource() {
+        return this.source;
+    }
+
+    // ENTRY : "MODULE" 또는 {"GET": "MODULE1", "POST": "MODULE2"}
+    public String getEntry(String method) {
+        if (this.entry instanceof Map) {
+            return (String) ((Map) this.entry).get(method);
+        }
+        return (String) this.entry;
+    }
+
+    public Boolean getDebug() {
+        return this.debug;
+    }
+
+    public int getConcurrency() {
+        return this.concurrency;
+    }
+
+    public Map<String, Map<String, Object>> getModules() {
+        return this.modules;
+    }
+
+    public Map<String, MappingRule> getRules() {
+        return this.rules;
+    }
+
+    public FlowGraph getGraph() {
+        return this.graph;
+    }
+}
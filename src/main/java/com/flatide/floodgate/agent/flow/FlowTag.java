@@ -27,6 +27,7 @@ package com.flatide.floodgate.agent.flow;
 public enum FlowTag {
     ENTRY,
     DEBUG,
+    CONCURRENCY,
     SPOOLING,
     MODULE,
     RULE,
@@ -37,7 +38,9 @@ public enum FlowTag {
     AFTER,
     RESULT,
     CALL,
+    DEPENDS,
     PIPE,
+    PIPEDEPTH,
     BUFFERSIZE,
 
     CONNECT,
@@ -45,12 +48,35 @@ public enum FlowTag {
     //OUTPUT,
     TARGET,
     BATCHSIZE,
+    BULKLOAD,
+    PARALLELISM,
+    PARALLELKEY,
+    ASYNCBATCH,
+    AUTOTUNE,
+    ERRORMODE,
+    DEADLETTER,
+    STAGING,
+    PUSHDOWN,
+    FORMAT,
+    DELIMITER,
+    HEADER,
+    COMMITSIZE,
+    COMMITINTERVAL,
+    RESUMEFROM,
     FETCHSIZE,
+    LOBTHRESHOLD,
     ACTION,
     TIMEOUT,
     SQL,
     CONDITION,
     LIMIT,
+    OFFSET,
+    ORDERBY,
+    KEYSET,
+    SAMPLE,
+    PARTITION,
+    WATERMARK,
+    ESTIMATE,
 
     // For Action
 
@@ -60,5 +86,6 @@ public enum FlowTag {
     CREATE,
     READ,
     UPDATE,
+    UPSERT,
     DELETE
 }
@@ -0,0 +1,250 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow;
+
+import com.flatide.floodgate.agent.flow.module.Module;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/*
+    PIPE의 source를 별도 쓰레드에서 읽고, sink들은 쓰기만 하도록 하여 읽기와 쓰기를 겹친다
+
+    sink마다 크기가 depth인 queue(lane)가 있고, source 쓰레드는 읽은 batch를 각 lane에 넣는다.
+    sink가 쓴 batch는 비워서 다시 lane에 돌려주므로 batch는 lane마다 depth + 2 개를 재사용한다.
+    lane이 가득 차면 source는 그 sink가 따라올 때까지 기다린다(backpressure).
+    따라서 가장 느린 sink도 depth 개의 batch 이상 뒤처지지 않는다.
+
+    sink가 하나이면 flow 쓰레드에서 실행하고 source는 lane의 batch에 바로 읽는다.
+    source가 다음 batch를 읽는 동안 sink가 이전 batch를 쓰므로 source는 LOB을 LobHandle이 아닌 값으로 읽는다.
+    복사한 batch들이 같은 LobHandle의 스트림을 동시에 읽지 않도록 sink가 여럿인 경우도 마찬가지이다.
+    sink가 여럿이면 각각 자신의 쓰레드에서 실행하고, connector가 batch를 비우거나 건너뛸 수 있으므로
+    source는 읽은 batch를 lane마다 복사해서(columnar copy) 넣는다.
+
+    source의 오류는 그 이전에 읽은 batch를 모두 쓴 다음 각 sink 쪽에서 그대로 다시 던진다.
+    sink가 실패하면 그 lane만 제외하고 나머지 sink는 끝까지 쓴 후에 오류를 던진다.
+    모든 sink가 실패하면 source를 멈춘다.
+    run()은 source와 모든 sink가 멈춘 후에 리턴하므로 processAfter(commit, rollback, close)는 그 후에 호출된다.
+ */
+public class Pipeline {
+    private static final long POLL_INTERVAL = 100;
+
+    // source가 실패했음을 알리는 batch
+    private static final RecordBatch FAILED = new RecordBatch();
+
+    private final Flow flow;
+    private final FlowContext context;
+    private final Module source;
+    private final List<Lane> lanes = new ArrayList<>();
+
+    private volatile Throwable error = null;
+
+    private class Lane implements Runnable {
+        final Module sink;
+        final BlockingQueue<RecordBatch> filled;
+        final BlockingQueue<RecordBatch> free;
+
+        volatile boolean stopped = false;
+        Throwable failure = null;
+
+        Lane(Module sink, int depth) {
+            this.sink = sink;
+            this.filled = new ArrayBlockingQueue<>(depth);
+            this.free = new ArrayBlockingQueue<>(depth + 2);
+            for (int i = 0; i < depth + 2; i++) {
+                this.free.add(new RecordBatch());
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                write();
+            } catch (Throwable t) {
+                this.failure = t;
+            } finally {
+                this.stopped = true;
+            }
+        }
+
+        void write() throws Exception {
+            while (true) {
+                RecordBatch batch = this.filled.take();
+                if (batch == FAILED) {
+                    Throwable t = error;
+                    if (t instanceof Exception) {
+                        throw (Exception) t;
+                    }
+                    throw new Exception(t);
+                }
+
+                // sink가 batch를 비울 수도 있으므로 먼저 확인한다
+                boolean complete = batch.isEmpty();
+                this.sink.processPartially(flow, context, batch);
+                if (complete) {
+                    break;
+                }
+                batch.clear();
+                this.free.put(batch);
+            }
+        }
+
+        // sink가 멈춘 경우에는 null
+        RecordBatch take() throws InterruptedException {
+            while (!this.stopped) {
+                RecordBatch batch = this.free.poll(POLL_INTERVAL, TimeUnit.MILLISECONDS);
+                if (batch != null) {
+                    return batch;
+                }
+            }
+            return null;
+        }
+
+        // sink가 멈춘 경우에는 넣지 않는다
+        void offer(RecordBatch batch) throws InterruptedException {
+            while (!this.stopped) {
+                if (this.filled.offer(batch, POLL_INTERVAL, TimeUnit.MILLISECONDS)) {
+                    return;
+                }
+            }
+        }
+    }
+
+    public Pipeline(Flow flow, FlowContext context, Module source, List<Module> sinks, int depth) {
+        this.flow = flow;
+        this.context = context;
+        this.source = source;
+
+        for (Module sink : sinks) {
+            this.lanes.add(new Lane(sink, depth));
+        }
+    }
+
+    public void run() throws Exception {
+        Thread reader = new Thread(this::read, "floodgate-pipe-" + this.source.getName());
+        reader.setDaemon(true);
+        reader.start();
+
+        List<Thread> writers = new ArrayList<>();
+        try {
+            if (this.lanes.size() == 1) {
+                this.lanes.get(0).run();
+            } else {
+                for (Lane lane : this.lanes) {
+                    Thread writer = new Thread(lane, "floodgate-pipe-" + lane.sink.getName());
+                    writer.setDaemon(true);
+                    writer.start();
+                    writers.add(writer);
+                }
+            }
+        } finally {
+            for (Thread writer : writers) {
+                writer.join();
+            }
+            for (Lane lane : this.lanes) {
+                lane.stopped = true;
+            }
+            reader.join();
+        }
+
+        for (Lane lane : this.lanes) {
+            Throwable t = lane.failure;
+            if (t != null) {
+                if (t instanceof Exception) {
+                    throw (Exception) t;
+                }
+                throw new Exception(t);
+            }
+        }
+    }
+
+    private void read() {
+        try {
+            if (this.lanes.size() == 1) {
+                readDirect(this.lanes.get(0));
+            } else {
+                readShared();
+            }
+        } catch (Throwable t) {
+            this.error = t;
+            for (Lane lane : this.lanes) {
+                try {
+                    lane.offer(FAILED);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+
+    private void readDirect(Lane lane) throws Exception {
+        while (true) {
+            RecordBatch batch = lane.take();
+            if (batch == null) {
+                return;
+            }
+
+            this.source.processPartially(this.flow, this.context, batch);
+            // 빈 batch는 sink에 끝을 알린다
+            boolean complete = batch.isEmpty();
+            lane.offer(batch);
+            if (complete) {
+                return;
+            }
+        }
+    }
+
+    private void readShared() throws Exception {
+        RecordBatch batch = new RecordBatch();
+        while (true) {
+            boolean active = false;
+            for (Lane lane : this.lanes) {
+                active |= !lane.stopped;
+            }
+            if (!active) {
+                return;
+            }
+
+            this.source.processPartially(this.flow, this.context, batch);
+            boolean complete = batch.isEmpty();
+            for (Lane lane : this.lanes) {
+                RecordBatch copy = lane.take();
+                if (copy != null) {
+                    copy.appendFrom(batch);
+                    lane.offer(copy);
+                }
+            }
+            batch.clear();
+            if (complete) {
+                return;
+            }
+        }
+    }
+}
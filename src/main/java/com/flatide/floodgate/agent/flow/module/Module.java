@@ -29,6 +29,7 @@ import com.flatide.floodgate.FloodgateConstants;
 import com.flatide.floodgate.agent.template.DocumentTemplate;
 import com.flatide.floodgate.system.utils.PropertyMap;
 import com.flatide.floodgate.agent.connector.ConnectorTag;
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
 import com.flatide.floodgate.agent.Context;
 import com.flatide.floodgate.agent.Context.CONTEXT_KEY;
 import com.flatide.floodgate.agent.connector.Connector;
@@ -38,6 +39,9 @@ import com.flatide.floodgate.agent.flow.FlowMockup;
 import com.flatide.floodgate.agent.flow.FlowTag;
 import com.flatide.floodgate.agent.flow.module.ModuleContext.MODULE_CONTEXT;
 import com.flatide.floodgate.agent.connector.ConnectorFactory;
+import com.flatide.floodgate.agent.connector.ConnectorDB;
+import com.flatide.floodgate.agent.connector.DirectExport;
+import com.flatide.floodgate.agent.connector.ParallelConnector;
 import com.flatide.floodgate.agent.flow.stream.FGInputStream;
 import com.flatide.floodgate.agent.flow.stream.FGSharableInputStream;
 import com.flatide.floodgate.agent.flow.stream.Payload;
@@ -55,7 +59,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
-import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class Module {
     // NOTE spring boot의 logback을 사용하려면 LogFactory를 사용해야 하나, 이 경우 log4j 1.x와 충돌함(SoapUI가 사용)
@@ -72,8 +76,24 @@ public class Module {
     private Connector connector = null;
     private Map connInfo = null;
 
+    // RULE의 복사본, param과 functionProcessor는 module마다 다르다
+    private MappingRule rule = null;
+
+    // PIPE 대상 module이 INSERT ... SELECT로 직접 읽는 경우 조회하지 않는다
+    private boolean pushdown = false;
+
+    // 읽은 batch가 다른 쓰레드에서 나중에 쓰이는 경우 LobHandle 대신 LOB을 읽어서 전달한다
+    private boolean materializeLob = false;
+
+    // DEPENDS로 다른 module과 동시에 실행되는 경우 FlowContext의 current, next 대신 자신의 입력과 출력을 사용한다
+    private boolean graph = false;
+    private FGInputStream current = null;
+
     private Integer progress = 0;
 
+    // connector가 측정하거나 정한 값들 (AUTOTUNE 등)
+    private final Map<String, Object> metrics = new ConcurrentHashMap<>();
+
     private String result;
     private String msg = "";
 
@@ -84,8 +104,7 @@ public class Module {
         this.name = name;
         this.sequences = sequences;
 
-        UUID id = UUID.randomUUID();
-        this.id = id.toString();
+        this.id = Flow.newId();
 
         context = new ModuleContext();
 
@@ -121,6 +140,14 @@ public class Module {
         return progress;
     }
 
+    public Map<String, Object> getMetrics() {
+        return metrics;
+    }
+
+    public void putMetric(String key, Object value) {
+        this.metrics.put(key, value);
+    }
+
     public String getResult() {
         return result;
     }
@@ -141,11 +168,90 @@ public class Module {
         return flow;
     }
 
+    public Connector getConnector() {
+        return connector;
+    }
+
+    /*
+        같은 RULE을 여러 module이 사용하거나 PIPE로 동시에 실행되는 경우에도
+        생성된 param이 섞이지 않도록 module마다 복사해서 사용한다
+     */
+    private MappingRule getRule(FlowContext flowContext) {
+        if (this.rule == null) {
+            String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
+            MappingRule shared = flowContext.getRules().get(ruleName);
+            if (shared != null) {
+                this.rule = new MappingRule(shared);
+            }
+        }
+        return this.rule;
+    }
+
+    public void setPushdown(boolean pushdown) {
+        this.pushdown = pushdown;
+    }
+
+    // 실행 전에 입력을 정하며, 실행 후에는 이 module의 출력(BYPASS 결과 등)이 된다
+    public void setGraphInput(FGInputStream input) {
+        this.graph = true;
+        this.current = input;
+    }
+
+    public FGInputStream getGraphOutput() {
+        return this.current;
+    }
+
+    private FGInputStream getCurrent(FlowContext flowContext) {
+        return this.graph ? this.current : flowContext.getCurrent();
+    }
+
+    private void setCurrent(FlowContext flowContext, FGInputStream stream) {
+        if (this.graph) {
+            this.current = stream;
+        } else {
+            flowContext.setCurrent(stream);
+        }
+    }
+
+    public boolean isMaterializeLob() {
+        return this.materializeLob;
+    }
+
+    public void setMaterializeLob(boolean materializeLob) {
+        this.materializeLob = materializeLob;
+    }
+
+    // CONNECT가 이름인 경우 meta의 datasource 정보를 읽는다
+    public Map getConnectInfo() throws Exception {
+        if (this.connInfo == null && this.sequences != null) {
+            Object connectRef = this.sequences.get(FlowTag.CONNECT.name());
+            if (connectRef instanceof String) {
+                String table = ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_DATASOURCE);
+                Map connMeta = MetaManager.shared().read(table, (String) connectRef);
+                this.connInfo = (Map) connMeta.get("DATA");
+            } else if (connectRef != null) {
+                this.connInfo = (Map) connectRef;
+            }
+        }
+        return this.connInfo;
+    }
+
+    // UPSERT용 built-in template, 같은 문법을 사용하는 DB는 template을 공유한다
+    private static String getUpsertTemplate(String dbType) throws Exception {
+        Dialect dialect = Dialect.find(dbType);
+        String template = dialect != null ? dialect.getUpsertTemplate() : null;
+        if (template == null) {
+            throw new Exception("UPSERT is not supported for " + dbType + ", use TEMPLATE.");
+        }
+        return template;
+    }
+
     /*
         FlowContext의 input에 대한 처리
     */
 
     public void processBefore(Flow flow, FlowContext flowContext) throws Exception {
+        this.rule = null;
         if (!(flow instanceof FlowMockup)) {
             FloodgateHandlerManager.shared().handle(Step.MODULE_IN, flow.getChannelContext(), this);
         }
@@ -155,31 +261,40 @@ public class Module {
                 if (connectRef == null) {
                     logger.info(flowContext.getId() + " : No connect info for module " + this.name);
                 } else {
-                    if (connectRef instanceof String) {
-                        String table = ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_DATASOURCE);
-                        Map connMeta = MetaManager.shared().read(table, (String) connectRef);
-                        connInfo = (Map) connMeta.get("DATA");
-                    } else {
-                        connInfo = (Map) connectRef;
-                    }
+                    connInfo = getConnectInfo();
 
                     connector = ConnectorFactory.shared().getConnector(connInfo);
 
+                    // CREATE, UPSERT를 N개의 connection으로 나누어 쓴다
+                    Object action = this.sequences.get(FlowTag.ACTION.name());
+                    int parallelism = PropertyMap.getIntegerDefault(this.sequences, FlowTag.PARALLELISM, 1);
+                    if (parallelism > 1 && connector instanceof ConnectorDB) {
+                        if (!FlowTag.CREATE.name().equals(action) && !FlowTag.UPSERT.name().equals(action)) {
+                            throw new IllegalArgumentException("PARALLELISM is supported only for CREATE and UPSERT.");
+                        }
+                        connector = new ParallelConnector(connInfo, parallelism, PropertyMap.get(this.sequences, FlowTag.PARALLELKEY));
+                    }
+
                     String templateName = (String) this.sequences.get(FlowTag.TEMPLATE.name());
                     String builtInTemplate = "";
                     if (templateName == null || templateName.isEmpty()) {
                         String method = (String) connInfo.get(ConnectorTag.CONNECTOR.name());
                         if ("FILE".equals(method)) {
                             builtInTemplate = "JSON";
+                        } else if (FlowTag.UPSERT.name().equals(this.sequences.get(FlowTag.ACTION.name()))) {
+                            builtInTemplate = getUpsertTemplate((String) connInfo.get(ConnectorTag.DBTYPE.name()));
                         } else {
                             builtInTemplate = method;
                         }
                     }
 
-                    DocumentTemplate documentTemplate = DocumentTemplate.get(templateName, builtInTemplate, false);
+                    DocumentTemplate documentTemplate = DocumentTemplate.get(templateName, builtInTemplate, true);
                     connector.setDocumentTemplate(documentTemplate);
 
                     this.context.add(MODULE_CONTEXT.CONNECT_INFO, connInfo);
+                    if (connectRef instanceof String) {
+                        this.context.add(MODULE_CONTEXT.CONNECT_NAME, connectRef);
+                    }
                     this.context.add(MODULE_CONTEXT.SEQUENCE, this.sequences);
 
                     if( this.flow instanceof FlowMockup ) {
@@ -194,8 +309,7 @@ public class Module {
                         }
                         temp.add(copy);
 
-                        String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                        MappingRule rule = flowContext.getRules().get(ruleName);
+                        MappingRule rule = getRule(flowContext);
                         String dbType = (String) connInfo.get(ConnectorTag.DBTYPE.toString());
                         rule.setFunctionProcessor(connector.getFunctionProcessor(dbType));
 
@@ -218,29 +332,30 @@ public class Module {
                     case CHECK:
                     {
                         connector.check();
-                        flowContext.setCurrent(null);
+                        setCurrent(flowContext, null);
                         setResult("success");
                         break;
                     }
                     case COUNT:
                     {
                         connector.count();
-                        flowContext.setCurrent(null);
+                        setCurrent(flowContext, null);
                         setResult("success");
                         break;
                     }
                     case READ:
                     {
-                        String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                        MappingRule rule = flowContext.getRules().get(ruleName);
+                        MappingRule rule = getRule(flowContext);
 
-                        connector.beforeRead(rule);
+                        if (!this.pushdown) {
+                            connector.beforeRead(rule);
+                        }
                         break;
                     }
                     case CREATE:
+                    case UPSERT:
                     {
-                        String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                        MappingRule rule = flowContext.getRules().get(ruleName);
+                        MappingRule rule = getRule(flowContext);
 
                         String dbType = (String) connInfo.get(ConnectorTag.DBTYPE.toString());
                         rule.setFunctionProcessor(connector.getFunctionProcessor(dbType));
@@ -273,10 +388,14 @@ public class Module {
             switch (FlowTag.valueOf(action)) {
                 case READ:
                 {
-                    String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                    MappingRule rule = flowContext.getRules().get(ruleName);
+                    MappingRule rule = getRule(flowContext);
 
-                    Integer limit = PropertyMap.getIntegerDefault(this.sequences, FlowTag.BUFFERSIZE, 1);
+                    Integer limit = PropertyMap.getInteger(this.sequences, FlowTag.BUFFERSIZE);
+                    if (limit == null) {
+                        // AUTOTUNE인 경우 connector가 정한 fetch 크기를 사용한다
+                        Object fetchSize = this.metrics.get(FlowTag.FETCHSIZE.name());
+                        limit = fetchSize instanceof Integer ? (Integer) fetchSize : 1;
+                    }
                     //List part = connector.readPartially(rule);
                     connector.readBuffer(rule, buffer, limit);
                     if (buffer.isEmpty()) {
@@ -293,8 +412,8 @@ public class Module {
                     return buffer;
                 }
                 case CREATE:
-                    String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                    MappingRule rule = flowContext.getRules().get(ruleName);
+                case UPSERT:
+                    MappingRule rule = getRule(flowContext);
 
                     if (buffer.isEmpty()) {
                         buffer = null;
@@ -318,12 +437,67 @@ public class Module {
             if (errorPos >= 0) {
                 errMsg = "#" + (errorPos + 1) + " : " + errMsg;
             }
+            Object committed = this.metrics.get("COMMITTED");
+            if (committed != null) {
+                // RESUMEFROM으로 이어서 실행할 수 있는 위치
+                errMsg = errMsg + " (committed " + committed + ")";
+            }
             setMsg(errMsg);
             e.printStackTrace();
             throw e;
         }
     }
 
+    /*
+        source(READ)와 같은 datasource인 경우 행을 가져오지 않고 INSERT ... SELECT로 처리한다
+     */
+    public void processPushdown(Flow flow, FlowContext flowContext, Module source) throws Exception {
+        try {
+            if (!(connector instanceof ConnectorDB)) {
+                throw new IllegalStateException("INSERT ... SELECT needs a JDBC connector : " + this.name);
+            }
+            MappingRule rule = getRule(flowContext);
+
+            ((ConnectorDB) connector).insertSelect(rule, source);
+
+            source.setResult("success");
+            setResult("success");
+            setMsg("");
+        } catch (Exception e) {
+            connector.rollback();
+            setResult("fail");
+            setMsg(e.getMessage());
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
+    /*
+        source(JDBC READ)의 ResultSet을 FORMAT에 따라 바로 인코딩하여 쓴다
+        컬럼 타입을 지원하지 않으면 false를 리턴하고 행 단위로 처리한다
+     */
+    public boolean processExport(Flow flow, FlowContext flowContext, Module source) throws Exception {
+        try {
+            MappingRule rule = getRule(flowContext);
+
+            int count = DirectExport.run(source, this, rule);
+            if (count < 0) {
+                return false;
+            }
+            setProgress(count);
+
+            source.setResult("success");
+            setResult("success");
+            setMsg("");
+            return true;
+        } catch (Exception e) {
+            setResult("fail");
+            setMsg(e.getMessage());
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     public void process(Flow flow, FlowContext flowContext) throws Exception {
         try {
             String action = (String) this.sequences.get(FlowTag.ACTION.name());
@@ -331,8 +505,7 @@ public class Module {
             switch (FlowTag.valueOf(action)) {
                 case READ:
                 {
-                    String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                    MappingRule rule = flowContext.getRules().get(ruleName);
+                    MappingRule rule = getRule(flowContext);
 
                     resultList = connector.read(rule);
 
@@ -340,7 +513,7 @@ public class Module {
                         Map<String, Object> data = new HashMap<>();
                         data.put("ITEMS", resultList);
                         FGInputStream stream = new FGSharableInputStream(new JSONContainer(data, "HEADER", "ITEMS"));
-                        flowContext.setCurrent(stream);
+                        setCurrent(flowContext, stream);
 
                         Boolean debug = (Boolean) this.sequences.get(FlowTag.DEBUG.name());
                         if (debug != null && debug) {
@@ -352,22 +525,22 @@ public class Module {
                             }
                         }
                     } else {
-                        flowContext.setCurrent(null);
+                        setCurrent(flowContext, null);
                     }
                     break;
                 }
                 case CREATE:
-                    String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                    MappingRule rule = flowContext.getRules().get(ruleName);
+                case UPSERT:
+                    MappingRule rule = getRule(flowContext);
 
                     String dbType = (String) connInfo.get(ConnectorTag.DBTYPE.toString());
                     rule.setFunctionProcessor(connector.getFunctionProcessor(dbType));
 
                     Payload payload = null;
 
-                    FGInputStream currentStream = flowContext.getCurrent();
+                    FGInputStream currentStream = getCurrent(flowContext);
                     if (currentStream != null) {
-                        payload = flowContext.getCurrent().subscribe();
+                        payload = currentStream.subscribe();
                     }
 
                     long sent = 0;
@@ -401,8 +574,8 @@ public class Module {
                             itemList.clear();
                         }
 
-                        flowContext.getCurrent().unsubscribe(payload);
-                        flowContext.setCurrent(null);
+                        currentStream.unsubscribe(payload);
+                        setCurrent(flowContext, null);
                     } catch (Exception e) {
                         connector.rollback();
                         throw e;
@@ -416,7 +589,8 @@ public class Module {
             setMsg("");
         } catch (Exception e) {
             setResult("fail");
-            setMsg(e.getMessage());
+            Object committed = this.metrics.get("COMMITTED");
+            setMsg(committed == null ? e.getMessage() : e.getMessage() + " (committed " + committed + ")");
             e.printStackTrace();
             throw e;
         }
@@ -435,9 +609,9 @@ public class Module {
                     break;
                 }
                 case CREATE:
+                case UPSERT:
                 {
-                    String ruleName = (String) this.sequences.get(FlowTag.RULE.name());
-                    MappingRule rule = flowContext.getRules().get(ruleName);
+                    MappingRule rule = getRule(flowContext);
 
                     String after = PropertyMap.getStringDefault(this.sequences, "AFTER", "COMMIT");
                     if ("COMMIT".equals(after)) {
@@ -447,15 +621,17 @@ public class Module {
                     }
                     connector.afterCreate(rule);
 
-                    flowContext.setCurrent(null);
+                    setCurrent(flowContext, null);
                     break;
                 }
             }
 
             connector.close();
 
-            String next = (String) this.sequences.get(FlowTag.CALL.name());
-            flowContext.setNext(next);
+            if (!this.graph) {
+                String next = (String) this.sequences.get(FlowTag.CALL.name());
+                flowContext.setNext(next);
+            }
         } catch (Exception e) {
             setResult("fail");
             setMsg(e.getMessage());
@@ -36,6 +36,7 @@ import java.util.Map;
 public class ModuleContext extends Context {
     public enum MODULE_CONTEXT {
         CONNECT_INFO,
+        CONNECT_NAME,
         SEQUENCE
     }
 }
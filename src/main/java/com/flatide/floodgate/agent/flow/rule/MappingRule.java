@@ -47,6 +47,14 @@ public class MappingRule {
     // for JDBC PreparedStatement
     private final List<String> param = new ArrayList<>();
 
+    public MappingRule() {
+    }
+
+    // rule item은 공유하고 param과 functionProcessor는 새로 가진다
+    public MappingRule(MappingRule other) {
+        this.rules.addAll(other.rules);
+    }
+
     public List<String> getParam() {
         return this.param;
     }
@@ -26,6 +26,7 @@ package com.flatide.floodgate.agent.flow.rule;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
 import java.util.regex.Matcher;
@@ -47,6 +48,8 @@ public class MappingRuleItem {
     RuleType targetType = RuleType.ANY;
     String targetTypeSub = "";
 
+    boolean key = false;
+
     public RuleAction action = RuleAction.reference;
 
     public enum RuleAction {
@@ -94,11 +97,16 @@ public class MappingRuleItem {
         }
 
         if( target.contains(":")) {
-            String[] t = target.split(":");
-            this.targetName = t[0].trim();
-            this.targetType = RuleType.valueOf(t[1].trim());
-            if( t.length > 2 ) {
-                this.targetTypeSub = t[2].trim();
+            List<String> t = new ArrayList<>(Arrays.asList(target.split(":")));
+            // KEY : key column for UPSERT, "ID:KEY" or "ID:NUMBER:KEY"
+            this.key = t.removeIf(s -> s.trim().equals("KEY"));
+
+            this.targetName = t.get(0).trim();
+            if( t.size() > 1 ) {
+                this.targetType = RuleType.valueOf(t.get(1).trim());
+            }
+            if( t.size() > 2 ) {
+                this.targetTypeSub = t.get(2).trim();
             }
         }
 
@@ -159,6 +167,10 @@ public class MappingRuleItem {
         this.targetTypeSub = targetTypeSub;
     }
 
+    public boolean isKey() {
+        return key;
+    }
+
     public RuleAction getAction() {
         return action;
     }
@@ -0,0 +1,175 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/*
+    재사용되는 byte 버퍼, 문자는 String.getBytes() 없이 바로 인코딩된다
+    UTF-8은 직접 인코딩하고, 그 밖의 charset은 CharsetEncoder를 사용한다
+ */
+public class ByteSink {
+    private byte[] buffer;
+    private int count = 0;
+
+    private final boolean utf8;
+    private final CharsetEncoder encoder;
+
+    private final byte[] digits = new byte[20];
+
+    public ByteSink(int capacity, Charset charset) {
+        this.buffer = new byte[Math.max(capacity, 256)];
+        this.utf8 = StandardCharsets.UTF_8.equals(charset);
+        this.encoder = this.utf8 ? null : charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+    }
+
+    private void ensure(int more) {
+        if (this.count + more > this.buffer.length) {
+            this.buffer = Arrays.copyOf(this.buffer, Math.max(this.buffer.length * 2, this.count + more));
+        }
+    }
+
+    public void write(int b) {
+        ensure(1);
+        this.buffer[this.count++] = (byte) b;
+    }
+
+    public void write(byte[] bytes) {
+        ensure(bytes.length);
+        System.arraycopy(bytes, 0, this.buffer, this.count, bytes.length);
+        this.count += bytes.length;
+    }
+
+    // 숫자, 날짜 등 ASCII로만 구성된 문자열
+    public void writeAscii(String str) {
+        int length = str.length();
+        ensure(length);
+        for (int i = 0; i < length; i++) {
+            this.buffer[this.count++] = (byte) str.charAt(i);
+        }
+    }
+
+    public void writeLong(long value) {
+        if (value == Long.MIN_VALUE) {
+            writeAscii(Long.toString(value));
+            return;
+        }
+        if (value < 0) {
+            write('-');
+            value = -value;
+        }
+        int i = this.digits.length;
+        do {
+            this.digits[--i] = (byte) ('0' + value % 10);
+            value /= 10;
+        } while (value > 0);
+
+        int length = this.digits.length - i;
+        ensure(length);
+        System.arraycopy(this.digits, i, this.buffer, this.count, length);
+        this.count += length;
+    }
+
+    public void writeChars(CharSequence chars, int start, int end) {
+        if (start >= end) {
+            return;
+        }
+        if (!this.utf8) {
+            encode(CharBuffer.wrap(chars, start, end));
+            return;
+        }
+        ensure((end - start) * 3);
+        for (int i = start; i < end; i++) {
+            char c = chars.charAt(i);
+            if (c < 0x80) {
+                this.buffer[this.count++] = (byte) c;
+            } else if (Character.isHighSurrogate(c) && i + 1 < end && Character.isLowSurrogate(chars.charAt(i + 1))) {
+                writeCodePoint(Character.toCodePoint(c, chars.charAt(++i)));
+            } else {
+                writeCodePoint(c);
+            }
+        }
+    }
+
+    public void writeChars(char[] chars, int start, int end) {
+        writeChars(CharBuffer.wrap(chars), start, end);
+    }
+
+    private void writeCodePoint(int cp) {
+        ensure(4);
+        if (cp < 0x800) {
+            this.buffer[this.count++] = (byte) (0xC0 | (cp >> 6));
+            this.buffer[this.count++] = (byte) (0x80 | (cp & 0x3F));
+        } else if (cp < 0x10000) {
+            if (Character.isSurrogate((char) cp)) {
+                // 짝이 맞지 않는 surrogate
+                this.buffer[this.count++] = '?';
+                return;
+            }
+            this.buffer[this.count++] = (byte) (0xE0 | (cp >> 12));
+            this.buffer[this.count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            this.buffer[this.count++] = (byte) (0x80 | (cp & 0x3F));
+        } else {
+            this.buffer[this.count++] = (byte) (0xF0 | (cp >> 18));
+            this.buffer[this.count++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+            this.buffer[this.count++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+            this.buffer[this.count++] = (byte) (0x80 | (cp & 0x3F));
+        }
+    }
+
+    private void encode(CharBuffer chars) {
+        // 최대 크기를 확보하므로 overflow는 발생하지 않는다
+        ensure((int) (chars.remaining() * this.encoder.maxBytesPerChar()) + 16);
+        ByteBuffer out = ByteBuffer.wrap(this.buffer, this.count, this.buffer.length - this.count);
+        this.encoder.reset();
+        this.encoder.encode(chars, out, true);
+        this.encoder.flush(out);
+        this.count = out.position();
+    }
+
+    public int size() {
+        return this.count;
+    }
+
+    public void reset() {
+        this.count = 0;
+    }
+
+    public void writeTo(OutputStream out) throws IOException {
+        if (this.count > 0) {
+            out.write(this.buffer, 0, this.count);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+/*
+    RFC 4180 형식, 구분자나 따옴표, 줄바꿈을 포함한 값만 따옴표로 감싼다
+    CLOB은 미리 검사할 수 없으므로 항상 따옴표로 감싼다
+ */
+public class DelimitedRowEncoder extends RowEncoder {
+    private final String delimiter;
+    private final boolean header;
+
+    public DelimitedRowEncoder(String delimiter, boolean header) {
+        this.delimiter = delimiter;
+        this.header = header;
+    }
+
+    @Override
+    public void writeHeader(ByteSink sink) {
+        if (!this.header) {
+            return;
+        }
+        for (int i = 0; i < this.names.length; i++) {
+            beginColumn(i, sink);
+            writeString(this.names[i], sink);
+        }
+        endRow(sink);
+    }
+
+    @Override
+    protected void beginRow(ByteSink sink) {
+    }
+
+    @Override
+    protected void beginColumn(int column, ByteSink sink) {
+        if (column > 0) {
+            sink.writeChars(this.delimiter, 0, this.delimiter.length());
+        }
+    }
+
+    @Override
+    protected void endRow(ByteSink sink) {
+        sink.write('\r');
+        sink.write('\n');
+    }
+
+    @Override
+    protected void writeNull(ByteSink sink) {
+    }
+
+    @Override
+    protected void writeString(String value, ByteSink sink) {
+        if (value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0 && !value.contains(this.delimiter)) {
+            sink.writeChars(value, 0, value.length());
+            return;
+        }
+        openText(sink);
+        escape(value, 0, value.length(), sink);
+        closeText(sink);
+    }
+
+    @Override
+    protected void openText(ByteSink sink) {
+        sink.write('"');
+    }
+
+    @Override
+    protected void escape(CharSequence value, int start, int end, ByteSink sink) {
+        int from = start;
+        for (int i = start; i < end; i++) {
+            if (value.charAt(i) == '"') {
+                sink.writeChars(value, from, i + 1);
+                sink.write('"');
+                from = i + 1;
+            }
+        }
+        sink.writeChars(value, from, end);
+    }
+
+    @Override
+    protected void closeText(ByteSink sink) {
+        sink.write('"');
+    }
+}
@@ -0,0 +1,117 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+/*
+    행마다 {"COLUMN": value, ...} 형태의 객체, 행 사이는 , 로 구분한다
+    배열의 [ ] 등은 template의 header, footer로 만든다
+ */
+public class JsonRowEncoder extends RowEncoder {
+    private static final byte[] HEX = "0123456789abcdef".getBytes();
+
+    @Override
+    protected void beginRow(ByteSink sink) {
+        if (this.rows > 0) {
+            sink.write(',');
+        }
+        sink.write('{');
+    }
+
+    @Override
+    protected void beginColumn(int column, ByteSink sink) {
+        if (column > 0) {
+            sink.write(',');
+        }
+        String name = this.names[column];
+        openText(sink);
+        escape(name, 0, name.length(), sink);
+        closeText(sink);
+        sink.write(':');
+    }
+
+    @Override
+    protected void endRow(ByteSink sink) {
+        sink.write('}');
+    }
+
+    @Override
+    protected void writeNull(ByteSink sink) {
+        sink.writeAscii("null");
+    }
+
+    @Override
+    protected void writeString(String value, ByteSink sink) {
+        openText(sink);
+        escape(value, 0, value.length(), sink);
+        closeText(sink);
+    }
+
+    @Override
+    protected void openText(ByteSink sink) {
+        sink.write('"');
+    }
+
+    @Override
+    protected void escape(CharSequence value, int start, int end, ByteSink sink) {
+        int from = start;
+        for (int i = start; i < end; i++) {
+            char c = value.charAt(i);
+            if (c != '"' && c != '\\' && c >= 0x20) {
+                continue;
+            }
+            sink.writeChars(value, from, i);
+            sink.write('\\');
+            switch (c) {
+                case '"':
+                case '\\':
+                    sink.write(c);
+                    break;
+                case '\n':
+                    sink.write('n');
+                    break;
+                case '\r':
+                    sink.write('r');
+                    break;
+                case '\t':
+                    sink.write('t');
+                    break;
+                default:
+                    sink.write('u');
+                    sink.write('0');
+                    sink.write('0');
+                    sink.write(HEX[c >> 4]);
+                    sink.write(HEX[c & 0xF]);
+                    break;
+            }
+            from = i + 1;
+        }
+        sink.writeChars(value, from, end);
+    }
+
+    @Override
+    protected void closeText(ByteSink sink) {
+        sink.write('"');
+    }
+}
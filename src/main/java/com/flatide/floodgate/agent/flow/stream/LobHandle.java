@@ -0,0 +1,168 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+import com.fasterxml.jackson.annotation.JsonValue;
+import com.flatide.floodgate.system.utils.DBUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.Reader;
+import java.io.Writer;
+import java.sql.Blob;
+import java.sql.Clob;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+
+/*
+    크기가 큰 CLOB/BLOB을 메모리에 읽지 않고 carrier로 전달하기 위한 handle
+
+    원본 ResultSet의 트랜잭션이 유지되는 동안(PIPE로 다음 buffer를 읽기 전)에만 유효하다.
+    대상에는 setCharacterStream/setBinaryStream 또는 transferTo()로 스트림 그대로 전달된다.
+ */
+public final class LobHandle {
+    private final Clob clob;
+    private final Blob blob;
+    private final long length;
+
+    private LobHandle(Clob clob, Blob blob, long length) {
+        this.clob = clob;
+        this.blob = blob;
+        this.length = length;
+    }
+
+    /*
+        threshold 이하의 LOB은 String 또는 byte[]로 읽는다
+        threshold < 0 이면 항상 읽는다 (connector가 닫힌 후에도 사용되는 경우)
+     */
+    public static Object of(Object value, long threshold) throws SQLException {
+        if (value instanceof Clob) {
+            Clob clob = (Clob) value;
+            long length = clob.length();
+            if (threshold < 0 || length <= threshold) {
+                return DBUtils.readClob(clob);
+            }
+            return new LobHandle(clob, null, length);
+        }
+        if (value instanceof Blob) {
+            Blob blob = (Blob) value;
+            long length = blob.length();
+            if (threshold < 0 || length <= threshold) {
+                byte[] bytes = blob.getBytes(1, (int) length);
+                blob.free();
+                return bytes;
+            }
+            return new LobHandle(null, blob, length);
+        }
+        return value;
+    }
+
+    public boolean isCharacter() {
+        return this.clob != null;
+    }
+
+    // CLOB은 문자 수, BLOB은 byte 수
+    public long length() {
+        return this.length;
+    }
+
+    public Reader getReader() throws SQLException {
+        return this.clob.getCharacterStream();
+    }
+
+    public InputStream getInputStream() throws SQLException {
+        return this.blob.getBinaryStream();
+    }
+
+    public void bind(PreparedStatement ps, int index) throws SQLException {
+        if (isCharacter()) {
+            ps.setCharacterStream(index, getReader(), this.length);
+        } else {
+            ps.setBinaryStream(index, getInputStream(), this.length);
+        }
+    }
+
+    public long transferTo(Writer writer) throws IOException, SQLException {
+        long count = 0;
+        try (Reader reader = getReader()) {
+            char[] buffer = new char[8192];
+            int read;
+            while ((read = reader.read(buffer)) != -1) {
+                writer.write(buffer, 0, read);
+                count += read;
+            }
+        }
+        return count;
+    }
+
+    public long transferTo(OutputStream out) throws IOException, SQLException {
+        long count = 0;
+        try (InputStream in = getInputStream()) {
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                count += read;
+            }
+        }
+        return count;
+    }
+
+    public void free() {
+        try {
+            if (this.clob != null) {
+                this.clob.free();
+            } else {
+                this.blob.free();
+            }
+        } catch (SQLException e) {
+            // already freed or closed with the connection
+        }
+    }
+
+    // template, JSON 등 문자열이 필요한 경우에는 읽어서 사용한다
+    @JsonValue
+    public Object getValue() {
+        try {
+            if (isCharacter()) {
+                try (Reader reader = getReader()) {
+                    return DBUtils.readString(reader, this.length);
+                }
+            }
+            return this.blob.getBytes(1, (int) this.length);
+        } catch (IOException | SQLException e) {
+            throw new IllegalStateException("LOB is not readable : " + e.getMessage(), e);
+        }
+    }
+
+    @Override
+    public String toString() {
+        if (isCharacter()) {
+            return (String) getValue();
+        }
+        return "BLOB(" + this.length + ")";
+    }
+}
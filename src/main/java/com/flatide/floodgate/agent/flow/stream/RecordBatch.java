@@ -0,0 +1,558 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+import com.flatide.floodgate.agent.flow.stream.RecordSchema.ColumnType;
+
+import java.sql.Timestamp;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/*
+    행마다 Map을 생성하지 않도록 컬럼 단위로 값을 저장하는 레코드 묶음
+
+    LONG, DOUBLE, DATE, TIMESTAMP 컬럼은 primitive 배열에 저장하고 나머지는 Object 배열에 저장한다.
+    기존 코드와의 호환을 위해 List<Map>으로도 사용할 수 있으며, get(i)는 해당 행의 Map view를 리턴한다.
+    view는 batch가 clear()되면 더 이상 유효하지 않으므로 batch의 수명을 넘어서 보관하지 않아야 한다.
+    키가 서로 다른 Map을 추가한 경우 행에 없던 컬럼은 absent로 표시되어 Map view에 나타나지 않는다.
+ */
+public class RecordBatch extends AbstractList<Map> implements RandomAccess {
+    private static final int INITIAL_CAPACITY = 16;
+
+    private RecordSchema schema = null;
+
+    // Object[], long[] or double[] per column
+    private Object[] columns = new Object[0];
+    private boolean[][] nulls = new boolean[0][];
+    private int[][] nanos = new int[0][];
+    // 행에 없는 컬럼, 모든 행에 있는 컬럼은 null
+    private boolean[][] absent = new boolean[0][];
+
+    private int size = 0;
+    private int capacity = 0;
+
+    public RecordBatch() {
+    }
+
+    public RecordBatch(RecordSchema schema) {
+        setSchema(schema);
+    }
+
+    public RecordSchema getSchema() {
+        return this.schema;
+    }
+
+    public void setSchema(RecordSchema schema) {
+        if (schema.equals(this.schema)) {
+            this.schema = schema;
+            return;
+        }
+        if (this.size > 0) {
+            throw new IllegalStateException("Cannot change the schema of a non-empty batch.");
+        }
+
+        this.schema = schema;
+        int count = schema.size();
+        this.columns = new Object[count];
+        this.nulls = new boolean[count][];
+        this.nanos = new int[count][];
+        this.absent = new boolean[count][];
+        for (int c = 0; c < count; c++) {
+            allocate(c, this.capacity);
+        }
+    }
+
+    public int getColumnCount() {
+        return this.schema == null ? 0 : this.schema.size();
+    }
+
+    // -1 if not exist
+    public int indexOf(String name) {
+        return this.schema == null ? -1 : this.schema.indexOf(name);
+    }
+
+    public int indexOfOrAdd(String name) {
+        int c = indexOf(name);
+        if (c >= 0) {
+            return c;
+        }
+
+        if (this.schema == null) {
+            this.schema = new RecordSchema(new String[] {name}, new ColumnType[] {ColumnType.OBJECT});
+        } else {
+            this.schema = this.schema.addColumn(name, ColumnType.OBJECT);
+        }
+
+        c = this.schema.size() - 1;
+        this.columns = Arrays.copyOf(this.columns, c + 1);
+        this.nulls = Arrays.copyOf(this.nulls, c + 1);
+        this.nanos = Arrays.copyOf(this.nanos, c + 1);
+        this.absent = Arrays.copyOf(this.absent, c + 1);
+        allocate(c, this.capacity);
+        // 이미 추가된 행에는 없는 컬럼이다
+        if (this.size > 0) {
+            this.absent[c] = new boolean[this.capacity];
+            Arrays.fill(this.absent[c], 0, this.size, true);
+        }
+
+        return c;
+    }
+
+    @Override
+    public int size() {
+        return this.size;
+    }
+
+    @Override
+    public void clear() {
+        for (int c = 0; c < this.columns.length; c++) {
+            if (this.schema.getType(c) == ColumnType.OBJECT) {
+                Arrays.fill((Object[]) this.columns[c], 0, this.size, null);
+            }
+        }
+        this.size = 0;
+    }
+
+    // subList(from, to).clear() 로 앞쪽 행을 버릴 때 사용된다
+    @Override
+    protected void removeRange(int fromIndex, int toIndex) {
+        int moved = this.size - toIndex;
+        for (int c = 0; c < this.columns.length; c++) {
+            System.arraycopy(this.columns[c], toIndex, this.columns[c], fromIndex, moved);
+            if (this.nulls[c] != null) {
+                System.arraycopy(this.nulls[c], toIndex, this.nulls[c], fromIndex, moved);
+            }
+            if (this.nanos[c] != null) {
+                System.arraycopy(this.nanos[c], toIndex, this.nanos[c], fromIndex, moved);
+            }
+            if (this.absent[c] != null) {
+                System.arraycopy(this.absent[c], toIndex, this.absent[c], fromIndex, moved);
+            }
+        }
+        int newSize = this.size - (toIndex - fromIndex);
+        for (int c = 0; c < this.columns.length; c++) {
+            if (this.schema.getType(c) == ColumnType.OBJECT) {
+                Arrays.fill((Object[]) this.columns[c], newSize, this.size, null);
+            }
+        }
+        this.size = newSize;
+        this.modCount++;
+    }
+
+    // append an empty row which all columns are null
+    public int newRow() {
+        ensureCapacity(this.size + 1);
+
+        int row = this.size++;
+        for (int c = 0; c < this.columns.length; c++) {
+            if (this.nulls[c] == null) {
+                ((Object[]) this.columns[c])[row] = null;
+            } else {
+                this.nulls[c][row] = true;
+            }
+            if (this.absent[c] != null) {
+                this.absent[c][row] = false;
+            }
+        }
+        return row;
+    }
+
+    // 행에 없는 컬럼인지, null 값과 구분된다
+    public boolean isAbsent(int row, int column) {
+        return this.absent[column] != null && this.absent[column][row];
+    }
+
+    // present에 없는 컬럼은 이 행에 없는 것으로 표시한다, 행마다 키가 다른 입력에 사용한다
+    public void setPresent(int row, BitSet present) {
+        for (int c = 0; c < this.columns.length; c++) {
+            setAbsent(row, c, !present.get(c));
+        }
+    }
+
+    private void setAbsent(int row, int column, boolean absent) {
+        if (this.absent[column] == null) {
+            if (!absent) {
+                return;
+            }
+            this.absent[column] = new boolean[this.capacity];
+        }
+        this.absent[column][row] = absent;
+    }
+
+    public void setNull(int row, int column) {
+        if (this.nulls[column] == null) {
+            ((Object[]) this.columns[column])[row] = null;
+        } else {
+            this.nulls[column][row] = true;
+        }
+    }
+
+    public void setLong(int row, int column, long value) {
+        ((long[]) this.columns[column])[row] = value;
+        this.nulls[column][row] = false;
+    }
+
+    public void setDouble(int row, int column, double value) {
+        ((double[]) this.columns[column])[row] = value;
+        this.nulls[column][row] = false;
+    }
+
+    // for DATE and TIMESTAMP
+    public void setTime(int row, int column, long millis, int nanos) {
+        ((long[]) this.columns[column])[row] = millis;
+        this.nulls[column][row] = false;
+        if (this.nanos[column] != null) {
+            this.nanos[column][row] = nanos;
+        }
+    }
+
+    public void setObject(int row, int column, Object value) {
+        ((Object[]) this.columns[column])[row] = value;
+    }
+
+    public void setValue(int row, int column, Object value) {
+        if (value == null) {
+            setNull(row, column);
+            return;
+        }
+
+        switch (this.schema.getType(column)) {
+            case LONG:
+                if (value instanceof Long || value instanceof Integer || value instanceof Short) {
+                    setLong(row, column, ((Number) value).longValue());
+                    return;
+                }
+                break;
+            case DOUBLE:
+                if (value instanceof Double) {
+                    setDouble(row, column, (Double) value);
+                    return;
+                }
+                break;
+            case DATE:
+                if (value instanceof java.sql.Date) {
+                    setTime(row, column, ((java.sql.Date) value).getTime(), 0);
+                    return;
+                }
+                break;
+            case TIMESTAMP:
+                if (value instanceof Timestamp) {
+                    setTime(row, column, ((Timestamp) value).getTime(), ((Timestamp) value).getNanos());
+                    return;
+                }
+                break;
+            default:
+                setObject(row, column, value);
+                return;
+        }
+
+        // value does not fit to the primitive column
+        toObjectColumn(column);
+        setObject(row, column, value);
+    }
+
+    public boolean isNull(int row, int column) {
+        if (this.nulls[column] == null) {
+            return ((Object[]) this.columns[column])[row] == null;
+        }
+        return this.nulls[column][row];
+    }
+
+    public long getLong(int row, int column) {
+        return ((long[]) this.columns[column])[row];
+    }
+
+    public double getDouble(int row, int column) {
+        return ((double[]) this.columns[column])[row];
+    }
+
+    // for DATE and TIMESTAMP
+    public long getTimeMillis(int row, int column) {
+        return ((long[]) this.columns[column])[row];
+    }
+
+    public int getNanos(int row, int column) {
+        return this.nanos[column] == null ? 0 : this.nanos[column][row];
+    }
+
+    public Object getValue(int row, int column) {
+        switch (this.schema.getType(column)) {
+            case OBJECT:
+                return ((Object[]) this.columns[column])[row];
+            case LONG:
+                return this.nulls[column][row] ? null : Long.valueOf(getLong(row, column));
+            case DOUBLE:
+                return this.nulls[column][row] ? null : Double.valueOf(getDouble(row, column));
+            case DATE:
+                return this.nulls[column][row] ? null : new java.sql.Date(getTimeMillis(row, column));
+            case TIMESTAMP:
+                if (this.nulls[column][row]) {
+                    return null;
+                }
+                Timestamp timestamp = new Timestamp(getTimeMillis(row, column));
+                timestamp.setNanos(getNanos(row, column));
+                return timestamp;
+            default:
+                return null;
+        }
+    }
+
+    // LobHandle을 값으로 읽는다, 원본 ResultSet이 다음 buffer를 읽은 후에도 사용하는 경우
+    public void materializeLobs() {
+        for (int c = 0; c < this.columns.length; c++) {
+            if (this.schema.getType(c) != ColumnType.OBJECT) {
+                continue;
+            }
+            Object[] values = (Object[]) this.columns[c];
+            for (int r = 0; r < this.size; r++) {
+                if (values[r] instanceof LobHandle) {
+                    values[r] = ((LobHandle) values[r]).getValue();
+                }
+            }
+        }
+    }
+
+    // copy rows of other batch, columnar copy if the schema is same
+    public void appendFrom(RecordBatch other) {
+        if (other.size == 0) {
+            return;
+        }
+        if (this.size == 0 && other.schema != null && !other.schema.equals(this.schema)) {
+            setSchema(other.schema);
+        }
+
+        if (other.schema != null && other.schema.equals(this.schema)) {
+            ensureCapacity(this.size + other.size);
+            for (int c = 0; c < this.columns.length; c++) {
+                System.arraycopy(other.columns[c], 0, this.columns[c], this.size, other.size);
+                if (this.nulls[c] != null) {
+                    System.arraycopy(other.nulls[c], 0, this.nulls[c], this.size, other.size);
+                }
+                if (this.nanos[c] != null) {
+                    System.arraycopy(other.nanos[c], 0, this.nanos[c], this.size, other.size);
+                }
+                if (other.absent[c] != null) {
+                    if (this.absent[c] == null) {
+                        this.absent[c] = new boolean[this.capacity];
+                    }
+                    System.arraycopy(other.absent[c], 0, this.absent[c], this.size, other.size);
+                } else if (this.absent[c] != null) {
+                    Arrays.fill(this.absent[c], this.size, this.size + other.size, false);
+                }
+            }
+            this.size += other.size;
+        } else {
+            for (int i = 0; i < other.size; i++) {
+                add(other.get(i));
+            }
+        }
+    }
+
+    @Override
+    public boolean add(Map row) {
+        int r = newRow();
+        for (Object o : row.entrySet()) {
+            Map.Entry entry = (Map.Entry) o;
+            int c = indexOfOrAdd(String.valueOf(entry.getKey()));
+            setValue(r, c, entry.getValue());
+            setAbsent(r, c, false);
+        }
+        // 이 행에 없는 컬럼
+        if (row.size() < getColumnCount()) {
+            for (int c = 0; c < getColumnCount(); c++) {
+                if (!row.containsKey(this.schema.getName(c))) {
+                    setAbsent(r, c, true);
+                }
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public Map get(int index) {
+        if (index < 0 || index >= this.size) {
+            throw new IndexOutOfBoundsException("Index: " + index + ", Size: " + this.size);
+        }
+        return new RowView(index);
+    }
+
+    private void allocate(int column, int capacity) {
+        switch (this.schema.getType(column)) {
+            case LONG:
+                this.columns[column] = new long[capacity];
+                this.nulls[column] = new boolean[capacity];
+                this.nanos[column] = null;
+                break;
+            case DOUBLE:
+                this.columns[column] = new double[capacity];
+                this.nulls[column] = new boolean[capacity];
+                this.nanos[column] = null;
+                break;
+            case DATE:
+                this.columns[column] = new long[capacity];
+                this.nulls[column] = new boolean[capacity];
+                this.nanos[column] = null;
+                break;
+            case TIMESTAMP:
+                this.columns[column] = new long[capacity];
+                this.nulls[column] = new boolean[capacity];
+                this.nanos[column] = new int[capacity];
+                break;
+            default:
+                this.columns[column] = new Object[capacity];
+                this.nulls[column] = null;
+                this.nanos[column] = null;
+                break;
+        }
+    }
+
+    private void ensureCapacity(int required) {
+        if (required <= this.capacity) {
+            return;
+        }
+
+        int capacity = Math.max(Math.max(INITIAL_CAPACITY, this.capacity * 2), required);
+        for (int c = 0; c < this.columns.length; c++) {
+            Object column = this.columns[c];
+            if (column instanceof long[]) {
+                this.columns[c] = Arrays.copyOf((long[]) column, capacity);
+            } else if (column instanceof double[]) {
+                this.columns[c] = Arrays.copyOf((double[]) column, capacity);
+            } else {
+                this.columns[c] = Arrays.copyOf((Object[]) column, capacity);
+            }
+            if (this.nulls[c] != null) {
+                this.nulls[c] = Arrays.copyOf(this.nulls[c], capacity);
+            }
+            if (this.nanos[c] != null) {
+                this.nanos[c] = Arrays.copyOf(this.nanos[c], capacity);
+            }
+            if (this.absent[c] != null) {
+                this.absent[c] = Arrays.copyOf(this.absent[c], capacity);
+            }
+        }
+        this.capacity = capacity;
+    }
+
+    private void toObjectColumn(int column) {
+        Object[] values = new Object[this.capacity];
+        for (int row = 0; row < this.size; row++) {
+            values[row] = getValue(row, column);
+        }
+
+        this.schema = this.schema.withType(column, ColumnType.OBJECT);
+        this.columns[column] = values;
+        this.nulls[column] = null;
+        this.nanos[column] = null;
+    }
+
+    private class RowView extends AbstractMap<String, Object> {
+        private final int row;
+
+        RowView(int row) {
+            this.row = row;
+        }
+
+        @Override
+        public Object get(Object key) {
+            int c = schema == null ? -1 : schema.indexOf(key);
+            return c < 0 || isAbsent(this.row, c) ? null : getValue(this.row, c);
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            int c = schema == null ? -1 : schema.indexOf(key);
+            return c >= 0 && !isAbsent(this.row, c);
+        }
+
+        @Override
+        public Object put(String key, Object value) {
+            int c = indexOfOrAdd(key);
+            Object old = isAbsent(this.row, c) ? null : getValue(this.row, c);
+            setValue(this.row, c, value);
+            setAbsent(this.row, c, false);
+            return old;
+        }
+
+        @Override
+        public int size() {
+            int count = 0;
+            for (int c = 0; c < getColumnCount(); c++) {
+                if (!isAbsent(this.row, c)) {
+                    count++;
+                }
+            }
+            return count;
+        }
+
+        // absent가 아닌 다음 컬럼, 없으면 컬럼 수
+        private int nextColumn(int c) {
+            while (c < getColumnCount() && isAbsent(this.row, c)) {
+                c++;
+            }
+            return c;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Object>> entrySet() {
+            return new AbstractSet<Map.Entry<String, Object>>() {
+                @Override
+                public Iterator<Map.Entry<String, Object>> iterator() {
+                    return new Iterator<Map.Entry<String, Object>>() {
+                        private int column = nextColumn(0);
+
+                        @Override
+                        public boolean hasNext() {
+                            return this.column < getColumnCount();
+                        }
+
+                        @Override
+                        public Map.Entry<String, Object> next() {
+                            if (!hasNext()) {
+                                throw new NoSuchElementException();
+                            }
+                            int c = this.column;
+                            this.column = nextColumn(c + 1);
+                            return new AbstractMap.SimpleImmutableEntry<>(schema.getName(c), getValue(row, c));
+                        }
+                    };
+                }
+
+                @Override
+                public int size() {
+                    return RowView.this.size();
+                }
+            };
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/*
+    RecordBatch의 컬럼 구성, 여러 batch가 공유할 수 있도록 변경하지 않는다
+ */
+public final class RecordSchema {
+    public enum ColumnType {
+        OBJECT,
+        LONG,
+        DOUBLE,
+        DATE,
+        TIMESTAMP
+    }
+
+    private final String[] names;
+    private final ColumnType[] types;
+    private final Map<String, Integer> index;
+
+    public RecordSchema(String[] names, ColumnType[] types) {
+        this.names = names;
+        this.types = types;
+        this.index = new HashMap<>(names.length * 2);
+        for (int i = 0; i < names.length; i++) {
+            this.index.put(names[i], i);
+        }
+    }
+
+    public int size() {
+        return this.names.length;
+    }
+
+    public String getName(int column) {
+        return this.names[column];
+    }
+
+    public ColumnType getType(int column) {
+        return this.types[column];
+    }
+
+    // -1 if not exist
+    public int indexOf(Object name) {
+        Integer i = this.index.get(name);
+        return i == null ? -1 : i;
+    }
+
+    public RecordSchema addColumn(String name, ColumnType type) {
+        String[] names = Arrays.copyOf(this.names, this.names.length + 1);
+        ColumnType[] types = Arrays.copyOf(this.types, this.types.length + 1);
+        names[this.names.length] = name;
+        types[this.types.length] = type;
+        return new RecordSchema(names, types);
+    }
+
+    public RecordSchema withType(int column, ColumnType type) {
+        ColumnType[] types = Arrays.copyOf(this.types, this.types.length);
+        types[column] = type;
+        return new RecordSchema(this.names, types);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        if (this == o) {
+            return true;
+        }
+        if (!(o instanceof RecordSchema)) {
+            return false;
+        }
+        RecordSchema other = (RecordSchema) o;
+        return Arrays.equals(this.names, other.names) && Arrays.equals(this.types, other.types);
+    }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(this.names) * 31 + Arrays.hashCode(this.types);
+    }
+}
@@ -0,0 +1,274 @@
+/*
+ * MIT License
+ *
+ * Copyright (c) 2022 FLATIDE LC.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.flatide.floodgate.agent.flow.stream;
+
+import com.flatide.floodgate.agent.flow.FlowTag;
+import com.flatide.floodgate.system.utils.PropertyMap;
+
+import java.io.Reader;
+import java.math.BigDecimal;
+import java.nio.CharBuffer;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/*
+    ResultSet의 행을 Map이나 String으로 만들지 않고 타입별로 읽어 ByteSink에 바로 인코딩한다
+
+    FORMAT : CSV, JSON
+    CSV는 DELIMITER(기본 ,)와 HEADER(컬럼 이름 행) 를 사용할 수 있다
+ */
+public abstract class RowEncoder {
+    public enum FORMAT {
+        CSV,
+        JSON
+    }
+
+    protected enum Kind {
+        LONG,
+        DECIMAL,
+        DOUBLE,
+        BOOLEAN,
+        DATE,
+        TIME,
+        TIMESTAMP,
+        STRING,
+        CLOB
+    }
+
+    protected int[] index;
+    protected Kind[] kinds;
+    protected String[] names;
+
+    protected long rows = 0;
+
+    private final char[] chunk = new char[8192];
+
+    // 지원하지 않는 FORMAT은 null
+    public static RowEncoder get(Map sequences) {
+        String format = PropertyMap.getString(sequences, FlowTag.FORMAT);
+        if (format == null) {
+            return null;
+        }
+        switch (format.toUpperCase()) {
+            case "CSV":
+                String delimiter = PropertyMap.getStringDefault(sequences, FlowTag.DELIMITER, ",");
+                delimiter = delimiter.replace("\\t", "\t");
+                Boolean header = (Boolean) PropertyMap.getDefault(sequences, FlowTag.HEADER, Boolean.FALSE);
+                return new DelimitedRowEncoder(delimiter, header);
+            case "JSON":
+                return new JsonRowEncoder();
+            default:
+                return null;
+        }
+    }
+
+    /*
+        sources : 읽을 ResultSet 컬럼 label, names : 출력할 컬럼 이름
+        지원하지 않는 타입이나 없는 컬럼이 있으면 false
+     */
+    public boolean compile(ResultSetMetaData meta, List<String> sources, List<String> names) throws SQLException {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = meta.getColumnCount(); i >= 1; i--) {
+            labels.put(meta.getColumnLabel(i).toUpperCase(), i);
+        }
+
+        int size = sources.size();
+        this.index = new int[size];
+        this.kinds = new Kind[size];
+        this.names = names.toArray(new String[0]);
+        for (int i = 0; i < size; i++) {
+            Integer column = labels.get(sources.get(i).toUpperCase());
+            if (column == null) {
+                return false;
+            }
+            Kind kind = getKind(meta.getColumnType(column));
+            if (kind == null) {
+                return false;
+            }
+            this.index[i] = column;
+            this.kinds[i] = kind;
+        }
+        return true;
+    }
+
+    private static Kind getKind(int type) {
+        switch (type) {
+            case Types.TINYINT:
+            case Types.SMALLINT:
+            case Types.INTEGER:
+            case Types.BIGINT:
+                return Kind.LONG;
+            case Types.NUMERIC:
+            case Types.DECIMAL:
+                return Kind.DECIMAL;
+            case Types.FLOAT:
+            case Types.REAL:
+            case Types.DOUBLE:
+                return Kind.DOUBLE;
+            case Types.BIT:
+            case Types.BOOLEAN:
+                return Kind.BOOLEAN;
+            case Types.DATE:
+                return Kind.DATE;
+            case Types.TIME:
+                return Kind.TIME;
+            case Types.TIMESTAMP:
+                return Kind.TIMESTAMP;
+            case Types.CHAR:
+            case Types.VARCHAR:
+            case Types.NCHAR:
+            case Types.NVARCHAR:
+            case Types.LONGVARCHAR:
+            case Types.LONGNVARCHAR:
+            case Types.TIME_WITH_TIMEZONE:
+            case Types.TIMESTAMP_WITH_TIMEZONE:
+                return Kind.STRING;
+            case Types.CLOB:
+            case Types.NCLOB:
+                return Kind.CLOB;
+            default:
+                // binary 등
+                return null;
+        }
+    }
+
+    public void writeHeader(ByteSink sink) {
+    }
+
+    public final void encode(ResultSet rs, ByteSink sink) throws Exception {
+        beginRow(sink);
+        for (int i = 0; i < this.index.length; i++) {
+            beginColumn(i, sink);
+
+            int column = this.index[i];
+            switch (this.kinds[i]) {
+                case LONG: {
+                    long value = rs.getLong(column);
+                    if (rs.wasNull()) {
+                        writeNull(sink);
+                    } else {
+                        sink.writeLong(value);
+                    }
+                    break;
+                }
+                case DECIMAL: {
+                    BigDecimal value = rs.getBigDecimal(column);
+                    if (value == null) {
+                        writeNull(sink);
+                    } else {
+                        sink.writeAscii(value.toPlainString());
+                    }
+                    break;
+                }
+                case DOUBLE: {
+                    double value = rs.getDouble(column);
+                    if (rs.wasNull()) {
+                        writeNull(sink);
+                    } else {
+                        sink.writeAscii(Double.toString(value));
+                    }
+                    break;
+                }
+                case BOOLEAN: {
+                    boolean value = rs.getBoolean(column);
+                    if (rs.wasNull()) {
+                        writeNull(sink);
+                    } else {
+                        sink.writeAscii(value ? "true" : "false");
+                    }
+                    break;
+                }
+                case DATE:
+                    writeValue(rs.getDate(column), sink);
+                    break;
+                case TIME:
+                    writeValue(rs.getTime(column), sink);
+                    break;
+                case TIMESTAMP:
+                    writeValue(rs.getTimestamp(column), sink);
+                    break;
+                case STRING: {
+                    String value = rs.getString(column);
+                    if (value == null) {
+                        writeNull(sink);
+                    } else {
+                        writeString(value, sink);
+                    }
+                    break;
+                }
+                case CLOB: {
+                    // 전체를 String으로 읽지 않고 나누어 인코딩한다
+                    Reader reader = rs.getCharacterStream(column);
+                    if (reader == null) {
+                        writeNull(sink);
+                    } else {
+                        try {
+                            openText(sink);
+                            int read;
+                            while ((read = reader.read(this.chunk)) > 0) {
+                                escape(CharBuffer.wrap(this.chunk, 0, read), 0, read, sink);
+                            }
+                            closeText(sink);
+                        } finally {
+                            reader.close();
+                        }
+                    }
+                    break;
+                }
+            }
+        }
+        endRow(sink);
+        this.rows++;
+    }
+
+    private void writeValue(Object value, ByteSink sink) {
+        if (value == null) {
+            writeNull(sink);
+        } else {
+            writeString(value.toString(), sink);
+        }
+    }
+
+    protected abstract void beginRow(ByteSink sink);
+
+    protected abstract void beginColumn(int column, ByteSink sink);
+
+    protected abstract void endRow(ByteSink sink);
+
+    protected abstract void writeNull(ByteSink sink);
+
+    protected abstract void writeString(String value, ByteSink sink);
+
+    protected abstract void openText(ByteSink sink);
+
+    protected abstract void escape(CharSequence value, int start, int end, ByteSink sink);
+
+    protected abstract void closeText(ByteSink sink);
+}
@@ -27,6 +27,8 @@ package com.flatide.floodgate.agent.flow.stream.carrier.pipe;
 import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
+import com.flatide.floodgate.agent.flow.stream.RecordBatch;
+import com.flatide.floodgate.agent.flow.stream.RecordSchema;
 import com.flatide.floodgate.agent.flow.stream.carrier.Carrier;
 
 import java.io.*;
@@ -38,7 +40,11 @@ public class JSONPipe implements Carrier {
     private JsonParser jParser;
 
     private Map<String, Object> header = null;
-    private List<Object> buffer = null;
+    private List buffer = null;
+    // 이전 buffer의 컬럼 구성을 재사용한다
+    private RecordSchema schema = null;
+    // 현재 행에서 읽은 컬럼
+    private final BitSet fields = new BitSet();
     private final int bufferSize;
     private int bufferReadSize = -1;
 
@@ -170,18 +176,42 @@ public class JSONPipe implements Carrier {
                         }
                         break;
                     case 2: // data seeking
-                        this.buffer = new ArrayList<>();
+                        // object 배열은 행마다 Map을 만들지 않고 RecordBatch에 바로 담는다
+                        RecordBatch batch = new RecordBatch();
+                        if( this.schema != null ) {
+                            batch.setSchema(this.schema);
+                        }
+                        List<Object> others = null;
+
                         this.bufferReadSize = 0;
                         while(true) {
-                            Object data = getChildAll();
-                            if( data == null ) {
-                                break;
+                            JsonToken first = this.jParser.nextToken();
+                            if( first == JsonToken.START_OBJECT && others == null ) {
+                                readRow(batch);
                             } else {
-                                this.buffer.add(data);
-                                this.bufferReadSize++;
-                                if( this.bufferReadSize == this.bufferSize) {
+                                Object data = getChildAll(first);
+                                if( data == null ) {
                                     break;
                                 }
+                                if( others == null ) {
+                                    // not an object, falling back to the list of values
+                                    others = new ArrayList<>(batch);
+                                }
+                                others.add(data);
+                            }
+
+                            this.bufferReadSize++;
+                            if( this.bufferReadSize == this.bufferSize) {
+                                break;
+                            }
+                        }
+
+                        if( others != null ) {
+                            this.buffer = others;
+                        } else {
+                            this.buffer = batch;
+                            if( batch.getSchema() != null ) {
+                                this.schema = batch.getSchema();
                             }
                         }
 
@@ -207,6 +237,11 @@ public class JSONPipe implements Carrier {
     // 현재 토큰의 하부구조를 모두 가져온다
     // 성능을 위해 non-recursive로 구현
     private Object getChildAll() throws Exception {
+        return getChildAll(this.jParser.nextToken());
+    }
+
+    // first : 이미 읽은 첫 토큰
+    private Object getChildAll(JsonToken first) throws Exception {
         int depth = -1;
 
         String fieldName = "";
@@ -214,7 +249,8 @@ public class JSONPipe implements Carrier {
 
         List<Object> parentList = new ArrayList<>();
         while(true) {
-            JsonToken token = this.jParser.nextToken();
+            JsonToken token = first != null ? first : this.jParser.nextToken();
+            first = null;
 
             if( token.isStructStart() ) {
                 depth++;
@@ -259,29 +295,7 @@ public class JSONPipe implements Carrier {
             if( token == JsonToken.FIELD_NAME) {
                 fieldName = this.jParser.getCurrentName();
             } else {
-                Object value = null;
-                switch(token) {
-                    case VALUE_STRING:
-                        value = this.jParser.getText();
-                        break;
-                    case VALUE_TRUE:
-                        value = true;
-                        break;
-                    case VALUE_FALSE:
-                        value = false;
-                        break;
-                    case VALUE_NUMBER_INT:
-                        value = this.jParser.getIntValue();
-                        break;
-                    case VALUE_NUMBER_FLOAT:
-                        value = this.jParser.getFloatValue();
-                        break;
-                    case VALUE_NULL:
-                        break;
-                    case VALUE_EMBEDDED_OBJECT:
-                        value = this.jParser.getEmbeddedObject();
-                        break;
-                }
+                Object value = getScalar(token);
 
                 if( current == null ) {
                     return value;
@@ -294,6 +308,53 @@ public class JSONPipe implements Carrier {
         }
     }
 
+    // START_OBJECT 다음부터 END_OBJECT까지를 batch의 한 행으로 읽는다
+    private void readRow(RecordBatch batch) throws Exception {
+        int row = batch.newRow();
+        this.fields.clear();
+
+        while(true) {
+            JsonToken token = this.jParser.nextToken();
+            if( token == JsonToken.END_OBJECT ) {
+                // 다른 행에만 있는 키는 이 행의 Map view에 나타나지 않는다
+                batch.setPresent(row, this.fields);
+                return;
+            }
+
+            String fieldName = this.jParser.getCurrentName();
+            token = this.jParser.nextToken();
+
+            Object value;
+            if( token.isStructStart() ) {
+                value = getChildAll(token);
+            } else {
+                value = getScalar(token);
+            }
+            int column = batch.indexOfOrAdd(fieldName);
+            batch.setValue(row, column, value);
+            this.fields.set(column);
+        }
+    }
+
+    private Object getScalar(JsonToken token) throws Exception {
+        switch(token) {
+            case VALUE_STRING:
+                return this.jParser.getText();
+            case VALUE_TRUE:
+                return true;
+            case VALUE_FALSE:
+                return false;
+            case VALUE_NUMBER_INT:
+                return this.jParser.getIntValue();
+            case VALUE_NUMBER_FLOAT:
+                return this.jParser.getFloatValue();
+            case VALUE_EMBEDDED_OBJECT:
+                return this.jParser.getEmbeddedObject();
+            default:
+                return null;
+        }
+    }
+
     private void skipChildAll() throws Exception {
         int depth = 0;
 
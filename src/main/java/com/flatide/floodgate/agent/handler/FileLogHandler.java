@@ -101,6 +101,9 @@ public class FileLogHandler implements FloodgateAbstractHandler {
         String id = module.getId();
 
         logger.info(String.format("Module %s is done : %s ms elapsed.", id, cur - start));
+        if (!module.getMetrics().isEmpty()) {
+            logger.info(String.format("Module %s metrics : %s", id, module.getMetrics()));
+        }
     }
 
     @Override
@@ -26,15 +26,16 @@ package com.flatide.floodgate.agent.meta;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flatide.floodgate.ConfigurationManager;
+import com.flatide.floodgate.FloodgateConstants;
+import com.flatide.floodgate.agent.connector.ConnectionPoolManager;
 import com.flatide.floodgate.system.datasource.FDataSource;
 import com.flatide.floodgate.system.datasource.FDataSourceDB;
 import com.flatide.floodgate.system.datasource.FDataSourceDefault;
 import com.flatide.floodgate.system.datasource.FDataSourceFile;
+import com.flatide.floodgate.system.utils.DBUtils;
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.Reader;
 import java.sql.Clob;
 import java.util.HashMap;
 import java.util.List;
@@ -198,6 +199,21 @@ public final class MetaManager {
         return null;
     }
 
+    // 메타 version, meta를 읽지 않고 변경 여부를 확인한다
+    public Object getVersion(String tableName, String key) throws Exception {
+        String keyName = this.tableKeyMap.get(tableName);
+        if( keyName == null ) {
+            keyName = "ID";
+        }
+
+        try {
+            return this.dataSource.getVersion(tableName, keyName, key);
+        } catch(Exception e) {
+            e.printStackTrace();
+            throw e;
+        }
+    }
+
     public List<Map<String, Object>> readList(String tableName, String key) throws Exception {
         return readList(tableName, key, false);
     }
@@ -231,19 +247,10 @@ public final class MetaManager {
                             result.put(e.getKey(), obj);
                         } else if (obj instanceof Clob) {
                             // Jackson cannot convert LOB directly, converting it to String
-                            final StringBuilder sb = new StringBuilder();
-                            final Reader reader = ((Clob) obj).getCharacterStream();
-                            final BufferedReader br = new BufferedReader(reader);
-
-                            int b;
-                            while (-1 != (b = br.read())) {
-                                sb.append((char) b);
-                            }
-
-                            br.close();
+                            String text = DBUtils.readClob((Clob) obj);
 
                             ObjectMapper mapper = new ObjectMapper();
-                            Map<String, Object> json = (Map<String, Object>) mapper.readValue(sb.toString(), Map.class);
+                            Map<String, Object> json = (Map<String, Object>) mapper.readValue(text, Map.class);
                             result.put(e.getKey(), json);
                         }
                     }
@@ -309,6 +316,7 @@ public final class MetaManager {
             keyName = "ID";
         }*/
 
+        Object key = data.get(keyName);
         try {
             boolean result = true;
             if( toSource ) {
@@ -316,6 +324,7 @@ public final class MetaManager {
             }
             if( result ) {
                 table.put(keyName, data);
+                invalidatePool(tableName, key);
             }
 
             return result;
@@ -345,6 +354,7 @@ public final class MetaManager {
             }
             if (result) {
                 table.remove(key);
+                invalidatePool(tableName, key);
             }
             return true;
         } catch(Exception e) {
@@ -353,6 +363,13 @@ public final class MetaManager {
         }
     }
 
+    // datasource 메타가 바뀌면 그 커넥션 풀을 닫는다, 다음 요청에서 새 접속 정보로 만든다
+    private void invalidatePool(String tableName, Object key) {
+        if( key != null && tableName.equals(ConfigurationManager.shared().getString(FloodgateConstants.META_SOURCE_TABLE_FOR_DATASOURCE)) ) {
+            ConnectionPoolManager.shared().invalidate(String.valueOf(key));
+        }
+    }
+
     public boolean load(String tableName) throws Exception {
         MetaTable table = this.cache.get(tableName);
         if( table == null ) {
@@ -40,6 +40,7 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -50,25 +51,34 @@ public class DocumentTemplate {
 
     private TemplatePart root = null;
 
+    // hash가 같은 다른 내용의 template을 구분한다
+    private static final AtomicLong revision = new AtomicLong(0);
+
+    // template 이름과 내용의 hash, template에서 사용하는 {...} 표현식, SQL cache의 key로 사용된다
+    private String id = "";
+    // 변경 여부는 hash가 아닌 내용으로 비교한다
+    private List<String> lines = null;
+    private final Set<String> expressions = new TreeSet<>();
+
     private DocumentTemplate() {
     }
 
     /*
      * builtInTemplate : Pre-defined template located in scr/main/resources
+     * cache : built-in template은 다시 읽지 않고, meta의 template은 내용이 같으면 파싱하지 않는다
      */
     public static DocumentTemplate get(String name, String builtInTemplate, boolean cache) throws Exception {
         if (name == null) {
             name = "";
         }
 
+        String key = name.isEmpty() ? "#" + builtInTemplate : name;
         DocumentTemplate documentTemplate = null;
-        if (cache) {
-            documentTemplate = templateCache.get(name);
+        if (cache && name.isEmpty()) {
+            documentTemplate = templateCache.get(key);
         }
 
-        if( documentTemplate == null || cache == false) {
-            documentTemplate = new DocumentTemplate();
-
+        if( documentTemplate == null ) {
             List<String> lines = new ArrayList<>();
 
             if( !name.isEmpty() ) {
@@ -105,10 +115,33 @@ public class DocumentTemplate {
 
             lines = preprocess(lines);
 
+            String id = key + "@" + Integer.toHexString(lines.hashCode());
+            DocumentTemplate cached = templateCache.get(key);
+            if (cached != null && cached.lines.equals(lines)) {
+                if (cache) {
+                    return cached;
+                }
+                id = cached.id;
+            } else if (cached != null && cached.id.equals(id)) {
+                // 내용이 바뀌었지만 hash가 같으면 SQL cache가 이전 SQL을 사용하지 않도록 id를 바꾼다
+                id += "." + revision.incrementAndGet();
+            }
+
+            documentTemplate = new DocumentTemplate();
+            documentTemplate.id = id;
+            documentTemplate.lines = lines;
+            Pattern pattern = Pattern.compile("\\{[^\\s{}]+\\}");
+            for (String line : lines) {
+                Matcher matcher = pattern.matcher(line);
+                while (matcher.find()) {
+                    documentTemplate.expressions.add(matcher.group());
+                }
+            }
+
             documentTemplate.root = new TemplatePart("root", lines);
             //System.out.println(documentTemplate.root.print(0));
 
-            templateCache.put(name, documentTemplate);
+            templateCache.put(key, documentTemplate);
         }
 
         return documentTemplate;
@@ -163,20 +196,16 @@ public class DocumentTemplate {
     }
 
     public <T> String makeHeader(Context context, MappingRule rules, List<T> itemList) throws Exception {
-        TemplatePart part = getPart("header");
-        if( part == null ) {
-            return "";
-        }
-        // header와 footer에서 첫번째 컬럼의 tag name등을 처리하기 위해
-        T columnData = null;
-        if( itemList != null ) {
-            columnData = itemList.get(0);
-        }
-        return processPart(part, context, rules, itemList, columnData,0);
+        return makePart("header", context, rules, itemList);
     }
 
     public <T> String makeFooter(Context context, MappingRule rules, List<T> itemList) throws Exception {
-        TemplatePart part = getPart("footer");
+        return makePart("footer", context, rules, itemList);
+    }
+
+    // header, footer 이외의 part (UPSERT의 stage, merge 등)
+    public <T> String makePart(String name, Context context, MappingRule rules, List<T> itemList) throws Exception {
+        TemplatePart part = getPart(name);
         if( part == null ) {
             return "";
         }
@@ -188,6 +217,22 @@ public class DocumentTemplate {
         return processPart(part, context, rules, itemList, columnData,0);
     }
 
+    public boolean hasPart(String name) {
+        return getPart(name) != null;
+    }
+
+    /*
+        같은 rule과 컬럼에 대해 같은 결과를 만드는지 판단하기 위한 값
+        template에서 참조하는 context 값이 달라지면 signature도 달라진다
+     */
+    public String getSignature(Context context) {
+        StringBuilder builder = new StringBuilder(this.id);
+        for (String expression : this.expressions) {
+            builder.append('|').append(context.evaluate(expression));
+        }
+        return builder.toString();
+    }
+
     public <T> String makeBody(Context context, MappingRule rules, List<T> itemList, long index) throws Exception {
         TemplatePart part = getPart("body");
         if( part == null ) {
@@ -221,7 +266,10 @@ public class DocumentTemplate {
                         condition = "false";
                     }
 
-                    if( context.evaluate(condition).equalsIgnoreCase("true") ) {
+                    // filter=key|nonkey : 해당하는 컬럼이 rule에 있으면 true
+                    String filter = child.getAttribute("filter");
+                    boolean matched = filter.isEmpty() ? context.evaluate(condition).equalsIgnoreCase("true") : hasColumn(rules, filter);
+                    if( matched ) {
                         isTrue = true;
                         String result = processPart(child, context, rules, itemList, columnData, index);
                         builder.append(result);
@@ -242,6 +290,15 @@ public class DocumentTemplate {
         return builder.toString();
     }
 
+    private static boolean hasColumn(MappingRule rules, String filter) {
+        for (MappingRuleItem item : rules.getRules()) {
+            if( ("key".equals(filter) && item.isKey()) || ("nonkey".equals(filter) && !item.isKey()) ) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private <T> String processRow(TemplatePart part, Context context, MappingRule rules, List<T> itemList, long index) throws Exception {
         String rowDelimiter = part.getAttribute("delimiter");
         if( rowDelimiter == null) {
@@ -277,11 +334,17 @@ public class DocumentTemplate {
         delimiter = delimiter.replace("\\r", "\\s");
         delimiter = delimiter.replace("\\n", "\r\n");
 
+        // key : key column only, nonkey : except key column
+        String filter = column.getAttribute("filter");
+
         for(TemplatePart part : column.getChildren() ) {
             if( part.getName().isEmpty() ) {
                 String col = part.getContent();
                 int i = 0;
                 for (MappingRuleItem item : rules.getRules()) {
+                    if( ("key".equals(filter) && !item.isKey()) || ("nonkey".equals(filter) && item.isKey()) ) {
+                        continue;
+                    }
                     String result = col;
                     if (i > 0) {
                         builder.append(delimiter);
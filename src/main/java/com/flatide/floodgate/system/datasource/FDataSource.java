@@ -36,6 +36,8 @@ public interface FDataSource {
 
     boolean create(String key);
     Map<String, Object> read(String tableName, String keyColumn, String key) throws Exception;
+    // row가 바뀌면 달라지는 값, 알 수 없으면 null
+    Object getVersion(String tableName, String keyColumn, String key) throws Exception;
     List<Map<String, Object>> readList(String tableName, String keyColumn, String key) throws Exception;
     boolean insert(String tableName, String keyColumn, Map<String, Object> row) throws Exception;
     boolean update(String tableName, String keyColumn, Map<String, Object> row) throws Exception;
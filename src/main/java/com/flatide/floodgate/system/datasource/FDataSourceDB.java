@@ -27,16 +27,17 @@ package com.flatide.floodgate.system.datasource;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.flatide.floodgate.ConfigurationManager;
 import com.flatide.floodgate.agent.meta.MetaManager;
+import com.flatide.floodgate.system.utils.DBUtils;
 import com.zaxxer.hikari.HikariConfig;
 import com.zaxxer.hikari.HikariDataSource;
 
 import org.apache.logging.log4j.LogManager;
 import org.apache.logging.log4j.Logger;
 
-import java.io.BufferedReader;
-import java.io.Reader;
 import java.sql.*;
 import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax.sql.DataSource;
 import org.springframework.jdbc.core.JdbcTemplate;
@@ -54,6 +55,11 @@ public class FDataSourceDB extends FDataSourceDefault {
     String user;
     String password;
     Integer maxPoolSize;
+    // 변경 시각이나 번호를 저장하는 컬럼, 다른 agent가 meta를 변경하는 경우 설정한다
+    String versionColumn;
+
+    // 이 datasource로 변경한 횟수, versionColumn이 없으면 version으로 사용한다
+    private final Map<String, AtomicLong> modCounts = new ConcurrentHashMap<>();
 
     public FDataSourceDB(String name) throws Exception {
         super(name);
@@ -62,6 +68,7 @@ public class FDataSourceDB extends FDataSourceDefault {
         this.user = ConfigurationManager.shared().getString("datasource." + name + ".user");
         this.password = ConfigurationManager.shared().getString("datasource." + name + ".password");
         this.maxPoolSize = ConfigurationManager.shared().getInteger("datasource." + name + ".maxPoolSize");
+        this.versionColumn = ConfigurationManager.shared().getString("datasource." + name + ".versionColumn");
 
         DataSource dataSource = null;
         try {
@@ -154,20 +161,11 @@ public class FDataSourceDB extends FDataSourceDefault {
                         map.put(name, obj);
                     } else if ( obj instanceof Clob) {
                         // Jackson cannot convert LOB directly, converting it to String
-                        final StringBuilder sb = new StringBuilder();
-                        final Reader reader = ((Clob) obj).getCharacterStream();
-                        final BufferedReader br = new BufferedReader(reader);
-
                         try {
-                            int b;
-                            while (-1 != (b = br.read())) {
-                                sb.append((char) b);
-                            }
-
-                            br.close();
+                            String text = DBUtils.readClob((Clob) obj);
 
                             ObjectMapper mapper = new ObjectMapper();
-                            Map json = mapper.readValue(sb.toString(), Map.class);
+                            Map json = mapper.readValue(text, Map.class);
                             map.put(name, json);
                         } catch (Exception e) {
                             throw new SQLException(e);
@@ -185,6 +183,37 @@ public class FDataSourceDB extends FDataSourceDefault {
         return null;
     }
 
+    @Override
+    public Object getVersion(String tableName, String keyColumn, String key) throws Exception {
+        if( this.versionColumn == null || this.versionColumn.isEmpty() ) {
+            return getModCount(tableName, key).get();
+        }
+
+        String query = "SELECT " + this.versionColumn + " FROM " + tableName + " WHERE " + keyColumn + " = ?";
+        logger.debug(query);
+
+        List<Object> result = jdbcTemplate.query(query, new RowMapper<Object>() {
+            @Override
+            public Object mapRow(ResultSet rs, int rowNum) throws SQLException {
+                Object obj = rs.getObject(1);
+                if( obj instanceof oracle.sql.TIMESTAMP) {
+                    obj = ((oracle.sql.TIMESTAMP)obj).timestampValue();
+                }
+                return obj;
+            }
+        }, key);
+
+        if (result.size() > 0) {
+            return result.get(0);
+        }
+
+        return null;
+    }
+
+    private AtomicLong getModCount(String tableName, String key) {
+        return this.modCounts.computeIfAbsent(tableName + "." + key, k -> new AtomicLong());
+    }
+
     @Override
     public List<Map<String, Object>> readList(String tableName, String keyColumn, String key) throws Exception {
         String query = "SELECT * FROM " + tableName;
@@ -204,6 +233,7 @@ public class FDataSourceDB extends FDataSourceDefault {
     @Override
     public boolean insert(String tableName, String keyColumn, Map<String, Object> row) throws Exception {
         List<String> colList = new ArrayList<>();
+        Object key = row.get(keyColumn);
 
         StringBuilder query = new StringBuilder();
         query.append("INSERT INTO ");
@@ -268,6 +298,9 @@ public class FDataSourceDB extends FDataSourceDefault {
                 return psmt;
             }
         });
+        if( count != 0 ) {
+            getModCount(tableName, String.valueOf(key)).incrementAndGet();
+        }
         return count != 0;
     }
 
@@ -334,6 +367,10 @@ public class FDataSourceDB extends FDataSourceDefault {
             }
         });
 
+        if( count != 0 ) {
+            getModCount(tableName, key).incrementAndGet();
+        }
+
         return count != 0;
     }
 
@@ -347,6 +384,9 @@ public class FDataSourceDB extends FDataSourceDefault {
             .append(" = ?" );
 
         int count = jdbcTemplate.update(query.toString(), key);
+        if( count != 0 ) {
+            getModCount(tableName, key).incrementAndGet();
+        }
         return count != 0;
     }
 
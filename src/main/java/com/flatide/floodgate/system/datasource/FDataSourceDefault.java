@@ -68,6 +68,11 @@ public class FDataSourceDefault implements FDataSource {
         return null;
     }
 
+    @Override
+    public Object getVersion(String tableName, String keyColumn, String key) throws Exception {
+        return null;
+    }
+
     @Override
     public List<Map<String, Object>> readList(String tableName, String keyColumn, String key) throws Exception {
         return null;
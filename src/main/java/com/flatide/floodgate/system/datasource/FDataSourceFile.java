@@ -270,6 +270,16 @@ public class FDataSourceFile extends FDataSourceDefault {
         }
     }
 
+    // 파일의 수정 시각과 크기, 여러 row를 한 파일에 저장하는 경우 파일 전체의 version이다
+    @Override
+    public Object getVersion(String tableName, String keyColumn, String key) {
+        File file = new File(this.path + "/" + makeFilename(tableName, key));
+        if( !file.exists() ) {
+            return null;
+        }
+        return file.lastModified() + ":" + file.length();
+    }
+
     @Override
     public boolean insert(String tableName, String keyColumn, Map<String, Object> row) throws Exception {
         String key = (String) row.remove(keyColumn);
@@ -24,18 +24,20 @@
 
 package com.flatide.floodgate.system.utils;
 
+import java.io.IOException;
+import java.io.Reader;
+import java.sql.Clob;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.DriverManager;
-import java.sql.PreparedStatement;
-import java.sql.ResultSet;
-import java.sql.ResultSetMetaData;
-import java.util.ArrayList;
+import java.sql.SQLException;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 
 import com.flatide.floodgate.agent.connector.ConnectorTag;
+import com.flatide.floodgate.agent.connector.ConnectionPoolManager;
+import com.flatide.floodgate.agent.connector.SchemaCache;
+import com.flatide.floodgate.agent.connector.dialect.Dialect;
 import com.flatide.floodgate.agent.flow.FlowTag;
 
 public class DBUtils {
@@ -112,39 +114,27 @@ public class DBUtils {
     }
 
     public static String addQueryLimitation(String dbType, String columns, String table, Integer limit) {
-        String query = "SELECT " + columns + " FROM " + table;
-
-        switch (dbType.trim().toUpperCase()) {
-            case "ORACLE":
-            query = query + " WHERE ROWNUM <= " + String.valueOf(limit);
-            break;
-            case "TIBERO":
-            query = query + " WHERE ROWNUM <= " + String.valueOf(limit);
-            break;
-            case "MYSQL":
-            query = query + " LIMIT " + String.valueOf(limit);
-            break;
-            case "MARIADB":
-            query = query + " LIMIT " + String.valueOf(limit);
-            break;
-            case "POSTGRESQL":
-            query = query + " LIMIT " + String.valueOf(limit);
-            break;
-            case "GREENPLUM":
-            query = query + " LIMIT " + String.valueOf(limit);
-            break;
-            case "MSSQL":
-            query = "SELECT TOP " + String.valueOf(limit) + " " + columns + " FROM " + table;
-            break;
-            case "DB2":
-            query = query + " FETCH FIRST " + String.valueOf(limit) + " ROWS ONLY";
-            break;
-            default:
-            query = query + " WHERE ROWNUM <= " + String.valueOf(limit);
-            break;
+        return Dialect.get(dbType).limit(columns, table, limit);
+    }
+
+    public static String readClob(Clob clob) throws SQLException {
+        try (Reader reader = clob.getCharacterStream()) {
+            return readString(reader, clob.length());
+        } catch (IOException e) {
+            throw new SQLException(e);
+        } finally {
+            clob.free();
         }
+    }
 
-        return query;
+    public static String readString(Reader reader, long length) throws IOException {
+        StringBuilder builder = new StringBuilder((int) Math.min(Math.max(length, 16), Integer.MAX_VALUE - 8));
+        char[] buffer = new char[8192];
+        int read;
+        while ((read = reader.read(buffer)) != -1) {
+            builder.append(buffer, 0, read);
+        }
+        return builder.toString();
     }
 
     public static String connect(String url, String userid, String passwd) throws Exception {
@@ -159,43 +149,49 @@ public class DBUtils {
     }
 
     public static boolean checkTable(String url, String userid, String passwd, String table) throws Exception {
-        try ( Connection con = DriverManager.getConnection(url, userid, passwd) ) {
-            DatabaseMetaData databaseMetaData = con.getMetaData();
+        return checkTable(null, url, userid, passwd, table);
+    }
 
-            ResultSet resultSet = databaseMetaData.getTables(null, null, table, new String[] {"TABLE"});
+    // name : datasource 이름, connector와 같은 SchemaCache 항목을 사용한다
+    public static boolean checkTable(String name, String url, String userid, String passwd, String table) throws Exception {
+        String datasource = ConnectionPoolManager.shared().getKey(name, url, userid);
+        if (SchemaCache.shared().isKnown(datasource, table)) {
+            return true;
+        }
 
-            return resultSet.next();
+        try ( Connection con = DriverManager.getConnection(url, userid, passwd) ) {
+            return SchemaCache.shared().exists(con, datasource, table);
         } catch(Exception e) {
             throw e;
         }
     }
 
     public static Map getColumnMap(String dbType, String url, String userid, String passwd, String table) throws Exception {
-        String query = DBUtils.addQueryLimitation(dbType, "*", table, 1);
-
-        try (Connection con = DriverManager.getConnection(url, userid, passwd)) {
-            try (PreparedStatement ps = con.prepareStatement(query)) {
-                ResultSet rs = ps.executeQuery();
-                ResultSetMetaData rsmeta = rs.getMetaData();
-                int count = rsmeta.getColumnCount();
-
-                List<String> columnList = new ArrayList<>();
-                Map<String, Object> columnMap = new HashMap<>();
-                for (int i = 1; i <= count; i++) {
-                    columnList.add(rsmeta.getColumnLabel(i));
-
-                    Map<String, Object> info = new HashMap<>();
-                    info.put("DisplaySize", rsmeta.getColumnDisplaySize(i));
-                    info.put("TypeName", rsmeta.getColumnTypeName(i));
+        return getColumnMap(null, dbType, url, userid, passwd, table);
+    }
 
-                    columnMap.put(rsmeta.getColumnLabel(i), info);
-                }
+    public static Map getColumnMap(String name, String dbType, String url, String userid, String passwd, String table) throws Exception {
+        String datasource = ConnectionPoolManager.shared().getKey(name, url, userid);
+        Map<String, SchemaCache.Column> columns = SchemaCache.shared().getCachedColumns(datasource, table);
 
-                return columnMap;
+        if (columns == null) {
+            try (Connection con = DriverManager.getConnection(url, userid, passwd)) {
+                columns = SchemaCache.shared().getColumns(con, datasource, table);
             } catch (Exception e) {
                 e.printStackTrace();
                 throw e;
             }
         }
+
+        Map<String, Object> columnMap = new HashMap<>();
+        for (Map.Entry<String, SchemaCache.Column> e : columns.entrySet()) {
+            Map<String, Object> info = new HashMap<>();
+            info.put("DisplaySize", e.getValue().getDisplaySize());
+            info.put("TypeName", e.getValue().getTypeName());
+
+            columnMap.put(e.getKey(), info);
+        }
+
+        return columnMap;
     }
 }